@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the coffee maker benchmarks once per thread count
+ * (1, 4 and the number of available processors) with the GC
+ * profiler attached, so every run reports throughput and
+ * allocation rate side by side.
+ *
+ * Usage: BenchmarkRunner [include-regexp [report-dir]]
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Runs the benchmarks matching args[0] and writes one CSV
+	 * report per thread count into args[1].
+	 * @param args
+	 * @throws RunnerException
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "Benchmark";
+		File reportDir = new File(args.length > 1 ? args[1] : "build/reports/jmh");
+		reportDir.mkdirs();
+
+		Set<Integer> threadCounts = new LinkedHashSet<Integer>();
+		threadCounts.add(1);
+		threadCounts.add(4);
+		threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+		for (int threads : threadCounts) {
+			Options options = new OptionsBuilder()
+					.include(include)
+					.threads(threads)
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.CSV)
+					.result(new File(reportDir, "results-" + threads + "-threads.csv").getPath())
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
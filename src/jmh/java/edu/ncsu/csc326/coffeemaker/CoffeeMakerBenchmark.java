@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Throughput of the purchase path and of checkInventory on one
+ * machine shared by all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoffeeMakerBenchmark {
+
+	/** Recipe slot that can always be brewed */
+	private static final int HIT = 0;
+	/** Recipe slot that needs more chocolate than the machine holds */
+	private static final int OUT_OF_STOCK = 1;
+
+	/** Orders per makeCoffeeBatch call */
+	private static final int BATCH_SIZE = 16;
+
+	/** Which Inventory implementation the machine uses */
+	@Param({"synchronized", "lockfree"})
+	public String inventory;
+
+	/** Whether PurchaseMetrics are recording every order */
+	@Param({"false", "true"})
+	public boolean metrics;
+
+	private CoffeeMaker coffeeMaker;
+	private final int[] batchIndexes = new int[BATCH_SIZE];
+	private final int[] batchPayments = new int[BATCH_SIZE];
+
+	/**
+	 * Builds a fresh machine for every iteration.
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws RecipeException {
+		Inventory stock = "lockfree".equals(inventory) ? new LockFreeInventory() : new Inventory();
+		coffeeMaker = new CoffeeMaker(new RecipeBook(), stock);
+		// Uses no ingredients, so the stock never drains mid-measurement.
+		coffeeMaker.addRecipe(recipe("Hot Water", "10", "0", "0", "0", "0"));
+		coffeeMaker.addRecipe(recipe("Mocha", "100", "3", "1", "1", "20"));
+		if (metrics) {
+			coffeeMaker.addListener(new PurchaseMetrics(3));
+		}
+		Arrays.fill(batchIndexes, HIT);
+		Arrays.fill(batchPayments, 50);
+	}
+
+	@Benchmark
+	public int makeCoffeeHit() {
+		return coffeeMaker.makeCoffee(HIT, 50);
+	}
+
+	@Benchmark
+	public int makeCoffeeInsufficientFunds() {
+		return coffeeMaker.makeCoffee(HIT, 5);
+	}
+
+	@Benchmark
+	public int makeCoffeeInsufficientInventory() {
+		return coffeeMaker.makeCoffee(OUT_OF_STOCK, 100);
+	}
+
+	@Benchmark
+	public int makeCoffeeBadIndex() {
+		return coffeeMaker.makeCoffee(-1, 50);
+	}
+
+	/**
+	 * The hit path through the batch API; scores are per order.
+	 * @return int []
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public int[] makeCoffeeBatchHit() {
+		return coffeeMaker.makeCoffeeBatch(batchIndexes, batchPayments);
+	}
+
+	@Benchmark
+	public String checkInventory() {
+		return coffeeMaker.checkInventory();
+	}
+
+	/**
+	 * Builds a recipe from the same strings the console UI would read.
+	 */
+	static Recipe recipe(String name, String price, String coffee, String milk, String sugar, String chocolate) 
+			throws RecipeException {
+		Recipe r = new Recipe();
+		r.setName(name);
+		r.setPrice(price);
+		r.setAmtCoffee(coffee);
+		r.setAmtMilk(milk);
+		r.setAmtSugar(sugar);
+		r.setAmtChocolate(chocolate);
+		return r;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
+
+/**
+ * Throughput of restocking through the string and int APIs on one
+ * inventory shared by all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryBenchmark {
+
+	private Inventory inventory;
+
+	/**
+	 * Starts every iteration from the default stock so the
+	 * coffee count cannot overflow.
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		inventory = new Inventory();
+	}
+
+	@Benchmark
+	public int addCoffee() throws InventoryException {
+		inventory.addCoffee("1");
+		return inventory.getCoffee();
+	}
+
+	/**
+	 * Restock of all four ingredients through the int API.
+	 * @return int
+	 * @throws InventoryException
+	 */
+	@Benchmark
+	public int addInventory() throws InventoryException {
+		inventory.addInventory(1, 1, 1, 1);
+		return inventory.getCoffee();
+	}
+
+	/**
+	 * Rejected restock: parsing fails and an exception is thrown.
+	 * @return boolean
+	 */
+	@Benchmark
+	public boolean addCoffeeInvalid() {
+		try {
+			inventory.addCoffee("one");
+			return true;
+		} catch (InventoryException e) {
+			return false;
+		}
+	}
+}
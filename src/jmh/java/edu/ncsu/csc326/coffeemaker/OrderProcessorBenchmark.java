@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Throughput and latency distribution of a purchase that goes
+ * through an OrderProcessor, next to a direct makeCoffee call on
+ * the same machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderProcessorBenchmark {
+
+	/** Slots in the order buffer */
+	@Param({"64", "1024"})
+	public int capacity;
+
+	private CoffeeMaker coffeeMaker;
+	private OrderProcessor processor;
+
+	/**
+	 * Builds a machine and a blocking processor in front of it.
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws RecipeException {
+		coffeeMaker = new CoffeeMaker();
+		// Uses no ingredients, so the stock never drains mid-measurement.
+		coffeeMaker.addRecipe(CoffeeMakerBenchmark.recipe("Hot Water", "10", "0", "0", "0", "0"));
+		processor = new OrderProcessor(coffeeMaker, capacity, OrderProcessor.FullPolicy.BLOCK);
+	}
+
+	/**
+	 * Stops the consumer thread.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		processor.close();
+	}
+
+	@Benchmark
+	public int direct() {
+		return coffeeMaker.makeCoffee(0, 50);
+	}
+
+	@Benchmark
+	public int submitAndWait() {
+		return processor.submit(0, 50).join();
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Throughput of the RecipeBook mutators on one book shared by
+ * all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeBookBenchmark {
+
+	private RecipeBook book;
+	private Recipe duplicate;
+	private Recipe replacement;
+
+	/**
+	 * A recipe name of its own for each benchmark thread, so that
+	 * threads adding and deleting at once never collide.
+	 */
+	@State(Scope.Thread)
+	public static class Spare {
+		private static final AtomicInteger THREADS = new AtomicInteger();
+
+		Recipe recipe;
+
+		/**
+		 * @throws RecipeException
+		 */
+		@Setup(Level.Trial)
+		public void setUp() throws RecipeException {
+			recipe = CoffeeMakerBenchmark.recipe("Mocha " + THREADS.incrementAndGet(), "100", "3", "1", "1", "2");
+		}
+	}
+
+	/**
+	 * Fills two slots of a book that grows as threads add their
+	 * spare recipes.
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws RecipeException {
+		book = new RecipeBook(3, true);
+		book.addRecipe(CoffeeMakerBenchmark.recipe("Coffee", "50", "3", "1", "1", "0"));
+		book.addRecipe(CoffeeMakerBenchmark.recipe("Latte", "75", "2", "3", "2", "0"));
+		duplicate = CoffeeMakerBenchmark.recipe("Latte", "80", "2", "3", "2", "0");
+		replacement = CoffeeMakerBenchmark.recipe("", "55", "3", "1", "1", "0");
+	}
+
+	/**
+	 * Adds the thread's own recipe and deletes it again from
+	 * whichever slot it took.
+	 * @param spare
+	 * @return String
+	 */
+	@Benchmark
+	public String addThenDeleteRecipe(Spare spare) {
+		book.addRecipe(spare.recipe);
+		return book.deleteRecipe(book.indexOf(spare.recipe.getName()));
+	}
+
+	/**
+	 * Adds a recipe whose name is already taken, which scans
+	 * the whole book and fails.
+	 * @return boolean
+	 */
+	@Benchmark
+	public boolean addDuplicateRecipe() {
+		return book.addRecipe(duplicate);
+	}
+
+	/**
+	 * Replaces the first recipe.
+	 * @return String
+	 */
+	@Benchmark
+	public String editRecipe() {
+		return book.editRecipe(0, replacement);
+	}
+}
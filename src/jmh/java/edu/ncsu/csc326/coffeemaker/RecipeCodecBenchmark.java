@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Cost of moving a menu as a RecipeCodec block, compared with
+ * rebuilding it through the string setters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeCodecBenchmark {
+
+	@Param({"100", "10000"})
+	public int recipes;
+
+	private Recipe[] menu;
+	private ByteBuffer encoded;
+	private ByteBuffer target;
+	private String[][] text;
+
+	/**
+	 * Builds the menu and its encoded and text forms.
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws RecipeException {
+		menu = new Recipe[recipes];
+		text = new String[recipes][];
+		for (int i = 0; i < recipes; i++) {
+			text[i] = new String[] {"Recipe " + i, Integer.toString(50 + i % 50), "3", "1", "1", 
+					Integer.toString(i % 4)};
+			menu[i] = CoffeeMakerBenchmark.recipe(text[i][0], text[i][1], text[i][2], text[i][3], 
+					text[i][4], text[i][5]);
+		}
+		encoded = RecipeCodec.encode(menu);
+		target = ByteBuffer.allocateDirect(encoded.capacity());
+	}
+
+	/**
+	 * Encodes the menu into a direct buffer.
+	 * @return ByteBuffer
+	 */
+	@Benchmark
+	public ByteBuffer encode() {
+		target.clear();
+		RecipeCodec.encode(menu, target);
+		return target;
+	}
+
+	/**
+	 * Decodes the menu from its block.
+	 * @return Recipe []
+	 * @throws RecipeException
+	 */
+	@Benchmark
+	public Recipe[] decode() throws RecipeException {
+		return RecipeCodec.decode(encoded.duplicate());
+	}
+
+	/**
+	 * Rebuilds the menu from text with the string setters.
+	 * @return Recipe []
+	 * @throws RecipeException
+	 */
+	@Benchmark
+	public Recipe[] parseText() throws RecipeException {
+		Recipe[] parsed = new Recipe[recipes];
+		for (int i = 0; i < recipes; i++) {
+			parsed[i] = CoffeeMakerBenchmark.recipe(text[i][0], text[i][1], text[i][2], text[i][3], 
+					text[i][4], text[i][5]);
+		}
+		return parsed;
+	}
+}
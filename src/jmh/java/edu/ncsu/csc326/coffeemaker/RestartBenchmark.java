@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Time to rebuild a coffee maker with a large menu after a
+ * restart, from the journal alone and from a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestartBenchmark {
+
+	@Param({"10000"})
+	public int recipes;
+
+	private Path directory;
+	private Path journalFile;
+	private Path snapshotFile;
+
+	/**
+	 * Adds the recipes through a journaled coffee maker, makes a
+	 * purchase of each and writes a snapshot at the end.
+	 * @throws IOException
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RecipeException {
+		directory = Files.createTempDirectory("restart");
+		journalFile = directory.resolve("coffeemaker.journal");
+		snapshotFile = directory.resolve("coffeemaker.snapshot");
+		try (Journal journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 1024)) {
+			journal.replay(new RecipeBook(recipes, false), new Inventory());
+			CoffeeMaker coffeeMaker = new CoffeeMaker(new RecipeBook(recipes, false), new Inventory());
+			coffeeMaker.addListener(journal);
+			for (int i = 0; i < recipes; i++) {
+				coffeeMaker.addRecipe(CoffeeMakerBenchmark.recipe("Recipe " + i, "50", "0", "0", "0", "0"));
+				coffeeMaker.makeCoffee(i, 50);
+			}
+			coffeeMaker.snapshot(journal).write(snapshotFile);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(journalFile);
+		Files.deleteIfExists(snapshotFile);
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * Replays every record of the journal.
+	 * @return RecipeBook
+	 * @throws IOException
+	 */
+	@Benchmark
+	public RecipeBook replayJournal() throws IOException {
+		RecipeBook book = new RecipeBook(recipes, false);
+		try (Journal journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 1024)) {
+			journal.replay(book, new Inventory());
+		}
+		return book;
+	}
+
+	/**
+	 * Loads the snapshot and replays the (empty) rest of the
+	 * journal.
+	 * @return RecipeBook
+	 * @throws IOException
+	 */
+	@Benchmark
+	public RecipeBook loadSnapshot() throws IOException {
+		RecipeBook book = new RecipeBook(recipes, false);
+		try (Journal journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 1024)) {
+			journal.replay(Snapshot.read(snapshotFile), book, new Inventory());
+		}
+		return book;
+	}
+}
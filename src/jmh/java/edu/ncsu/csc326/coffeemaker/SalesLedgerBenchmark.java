@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Cost of recording each sale in a SalesLedger on the purchase
+ * path.  Run with the GC profiler to check that appending does
+ * not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class SalesLedgerBenchmark {
+
+	private CoffeeMaker coffeeMaker;
+
+	/**
+	 * Builds a machine with a ledger large enough for a whole
+	 * iteration.
+	 * @throws RecipeException
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws RecipeException {
+		coffeeMaker = new CoffeeMaker();
+		coffeeMaker.addRecipe(CoffeeMakerBenchmark.recipe("Hot Water", "10", "0", "0", "0", "0"));
+		coffeeMaker.addListener(new SalesLedger(100000000L));
+	}
+
+	/**
+	 * Makes a beverage and records the sale.
+	 * @return int
+	 */
+	@Benchmark
+	public int makeCoffeeRecorded() {
+		return coffeeMaker.makeCoffee(0, 50);
+	}
+}
@@ -13,6 +13,11 @@
  */
 package edu.ncsu.csc326.coffeemaker;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
 
 /**
@@ -23,14 +28,38 @@ public class CoffeeMaker {
 	private RecipeBook recipeBook;
 	/** Inventory of the coffee maker */
     private Inventory inventory;
+    /** Listeners told about every change, e.g. a Journal */
+    private final List<CoffeeMakerListener> listeners = new CopyOnWriteArrayList<CoffeeMakerListener>();
+    /** Beverages made and restocks, counted whether or not anyone listens */
+    private final LongAdder purchases = new LongAdder();
+    private final LongAdder restocks = new LongAdder();
+    /** Listener calls that threw while an order was reported */
+    private final LongAdder listenerFailures = new LongAdder();
+    /** Keeps recipe changes and their notifications in the same order */
+    private final Object recipeLock = new Object();
+    /** Servings left of each recipe, rebuilt on read after a change */
+    private final ServingsTable servings;
+    /** Last checkInventory text, with the inventory version it shows */
+    private volatile InventoryText inventoryText;
 	
     /**
      * Constructor for the coffee maker
      *
      */
 	public CoffeeMaker() {
-	    recipeBook = new RecipeBook();
-		inventory = new Inventory();
+	    this(new RecipeBook(), new Inventory());
+	}
+	
+	/**
+	 * Constructor for a coffee maker that uses the given
+	 * recipe book and inventory, e.g. a LockFreeInventory.
+	 * @param recipeBook
+	 * @param inventory
+	 */
+	public CoffeeMaker(RecipeBook recipeBook, Inventory inventory) {
+		this.recipeBook = recipeBook;
+		this.inventory = inventory;
+		this.servings = new ServingsTable(recipeBook, inventory);
 	}
 	
 	/**
@@ -41,7 +70,53 @@ public class CoffeeMaker {
 	 * @return boolean
 	 */
 	public boolean addRecipe(Recipe r) {
-		return recipeBook.addRecipe(r);
+		synchronized (recipeLock) {
+			if (!recipeBook.addRecipe(r)) {
+				return false;
+			}
+			if (!listeners.isEmpty()) {
+				int slot = recipeBook.indexOf(r.getName());
+				for (CoffeeMakerListener listener : listeners) {
+					listener.recipeAdded(slot, r);
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Adds a new recipe built from the value.  The value itself
+	 * stays untouched.
+	 * @param value
+	 * @return boolean
+	 */
+	public boolean addRecipe(RecipeValue value) {
+		return addRecipe(value.toRecipe());
+	}
+	
+	/**
+	 * Adds many recipes to the recipe book at once.  added[i] is
+	 * set to whether recipes[i] was added.  Returns the number of
+	 * recipes added.
+	 * @param recipes
+	 * @param added
+	 * @return int
+	 */
+	public int addRecipes(Recipe[] recipes, boolean[] added) {
+		synchronized (recipeLock) {
+			int count = recipeBook.addRecipes(recipes, added);
+			if (count > 0 && !listeners.isEmpty()) {
+				for (int i = 0; i < recipes.length; i++) {
+					if (added[i]) {
+						int slot = recipeBook.indexOf(recipes[i].getName());
+						for (CoffeeMakerListener listener : listeners) {
+							listener.recipeAdded(slot, recipes[i]);
+						}
+					}
+				}
+			}
+			return count;
+		}
 	}
 	
 	/**
@@ -52,7 +127,15 @@ public class CoffeeMaker {
 	 * @return String
 	 */
 	public String deleteRecipe(int recipeToDelete) {
-		return recipeBook.deleteRecipe(recipeToDelete);
+		synchronized (recipeLock) {
+			String name = recipeBook.deleteRecipe(recipeToDelete);
+			if (name != null) {
+				for (CoffeeMakerListener listener : listeners) {
+					listener.recipeDeleted(recipeToDelete);
+				}
+			}
+			return name;
+		}
 	}
 	
 	/**
@@ -63,65 +146,510 @@ public class CoffeeMaker {
 	 * @return String
 	 */
 	public String editRecipe(int recipeToEdit, Recipe r) {
-		return recipeBook.editRecipe(recipeToEdit, r);
+		synchronized (recipeLock) {
+			String name = recipeBook.editRecipe(recipeToEdit, r);
+			if (name != null) {
+				for (CoffeeMakerListener listener : listeners) {
+					listener.recipeEdited(recipeToEdit, r);
+				}
+			}
+			return name;
+		}
+	}
+	
+	/**
+	 * Replaces a recipe with a new one built from the value, which
+	 * keeps the old recipe's name.  Unlike editRecipe(int, Recipe),
+	 * nothing the caller holds is renamed.
+	 * @param recipeToEdit
+	 * @param value
+	 * @return String
+	 */
+	public String editRecipe(int recipeToEdit, RecipeValue value) {
+		return editRecipe(recipeToEdit, value.toRecipe());
+	}
+	
+	/**
+	 * Registers a listener for every later change to the
+	 * recipes and the inventory.  A listener that throws while
+	 * an order is reported is counted by getListenerFailures and
+	 * the order goes through.
+	 * @param listener
+	 */
+	public void addListener(CoffeeMakerListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener added with addListener.
+	 * @param listener
+	 */
+	public void removeListener(CoffeeMakerListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Takes a snapshot of the recipes and of the inventory levels
+	 * recorded by the journal, which must be listening to this
+	 * coffee maker.  Purchases and restocks carry on while the
+	 * snapshot is taken; recipe changes wait for it.
+	 * @param journal
+	 * @return Snapshot
+	 */
+	public Snapshot snapshot(Journal journal) {
+		synchronized (recipeLock) {
+			return journal.snapshot(recipeBook.getMenu());
+		}
 	}
     
     /**
-     * Returns true if inventory was successfully added
+     * Adds inventory given as strings, e.g. from the console.
+     * All four amounts are parsed and checked before any
+     * stock changes.
      * @param amtCoffee
      * @param amtMilk
      * @param amtSugar
      * @param amtChocolate
-     * @return boolean
+     * @throws InventoryException
      */
-    public synchronized void addInventory(String amtCoffee, String amtMilk, String amtSugar, String amtChocolate) throws InventoryException {
-	    inventory.addCoffee(amtCoffee);
-	    inventory.addMilk(amtMilk);
-	    inventory.addSugar(amtSugar);
-	    inventory.addChocolate(amtChocolate);
+    public void addInventory(String amtCoffee, String amtMilk, String amtSugar, String amtChocolate) throws InventoryException {
+	    addInventory(Inventory.parseUnits(amtCoffee, "coffee"),
+	    		Inventory.parseUnits(amtMilk, "milk"),
+	    		Inventory.parseUnits(amtSugar, "sugar"),
+	    		Inventory.parseUnits(amtChocolate, "chocolate"));
     }
     
     /**
-     * Returns the inventory of the coffee maker
+     * Adds the given units of each ingredient.  All four
+     * amounts are checked before any stock changes.
+     * @param amtCoffee
+     * @param amtMilk
+     * @param amtSugar
+     * @param amtChocolate
+     * @throws InventoryException
+     */
+    public void addInventory(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) throws InventoryException {
+	    inventory.addInventory(amtCoffee, amtMilk, amtSugar, amtChocolate);
+	    restocks.increment();
+	    if (!listeners.isEmpty()) {
+	    	int[] amounts = {amtCoffee, amtMilk, amtSugar, amtChocolate};
+	    	for (CoffeeMakerListener listener : listeners) {
+	    		listener.inventoryAdded(amounts);
+	    	}
+	    }
+    }
+    
+    /**
+     * Adds units of each ingredient, by Ingredient id.  All
+     * amounts are checked before any stock changes.
+     * @param amounts
+     * @throws InventoryException
+     */
+    public void addInventory(int[] amounts) throws InventoryException {
+    	inventory.addInventory(amounts);
+    	restocks.increment();
+    	if (!listeners.isEmpty()) {
+    		// Listeners see what was added even if the caller reuses its array
+    		int[] added = amounts.clone();
+    		for (CoffeeMakerListener listener : listeners) {
+    			listener.inventoryAdded(added);
+    		}
+    	}
+    }
+    
+    /**
+     * Returns the number of ingredients the inventory stocks.
+     * @return int
+     */
+    public int getIngredientCount() {
+    	return inventory.getIngredientCount();
+    }
+    
+    /**
+     * Returns the name of the ingredient with the given id.
+     * @param ingredient
+     * @return String
+     */
+    public String getIngredientName(int ingredient) {
+    	return inventory.getIngredientName(ingredient);
+    }
+    
+    /**
+     * Returns the units in stock of the ingredient with the
+     * given id, without locking.
+     * @param ingredient
+     * @return int
+     */
+    public int getStock(int ingredient) {
+    	return inventory.getStock(ingredient);
+    }
+    
+    /**
+     * Returns the inventory of the coffee maker.  The text is
+     * rendered again, from a copy of the stock taken under the
+     * inventory's lock, only after the stock has changed, so
+     * polling takes no lock and builds nothing.
      * @return Inventory
      */
-    public synchronized String checkInventory() {
-        return inventory.toString();
+    public String checkInventory() {
+        long version = inventory.getVersion();
+        InventoryText cached = inventoryText;
+        if (cached != null && cached.version == version) {
+        	return cached.text;
+        }
+        String text = inventory.toString();
+        // The copy was whole; if the version has not moved it is that version's
+        if (inventory.getVersion() == version) {
+        	inventoryText = new InventoryText(version, text);
+        }
+        return text;
     }
     
     /**
      * Returns the change of a user's beverage purchase, or
-     * the user's money if the beverage cannot be made
-     * @param r
+     * the user's money if the beverage cannot be made.
+     * No machine-wide lock is held; the inventory checks and
+     * deducts the ingredients atomically.
+     * @param recipeToPurchase
      * @param amtPaid
      * @return int
      */
-    public synchronized int makeCoffee(int recipeToPurchase, int amtPaid) {
-        int change = 0;
+    public int makeCoffee(int recipeToPurchase, int amtPaid) {
+        // Orders are only timed when someone is listening
+        boolean timed = !listeners.isEmpty();
+        long start = timed ? System.nanoTime() : 0;
+        int change = amtPaid;
+        PurchaseOutcome outcome = PurchaseOutcome.INVALID_RECIPE;
+        Recipe[] recipes = recipeBook.getRecipes();
         
-        if (recipeToPurchase < 0 || 
-            recipeToPurchase >= getRecipes().length || 
-            getRecipes()[recipeToPurchase] == null) {
-            	change = amtPaid;
-        } 
-        else if (getRecipes()[recipeToPurchase].getPrice() <= amtPaid) {
-        	if (inventory.useIngredients(getRecipes()[recipeToPurchase])) {
-        		change = amtPaid - getRecipes()[recipeToPurchase].getPrice();
-        	} else {
-        		change = amtPaid;
+        if (recipeToPurchase >= 0 && recipeToPurchase < recipes.length) {
+        	Recipe recipe = recipes[recipeToPurchase];
+        	if (recipe != null) {
+        		int price = recipe.getPrice();
+        		if (price <= amtPaid) {
+        			int amtCoffee = recipe.getAmtCoffee();
+        			int amtMilk = recipe.getAmtMilk();
+        			int amtSugar = recipe.getAmtSugar();
+        			int amtChocolate = recipe.getAmtChocolate();
+        			// Recipes with extra ingredients take the general path
+        			boolean made = recipe.getIngredientCount() > Ingredient.STANDARD 
+        					? inventory.useIngredients(recipe.amounts())
+        					: inventory.useIngredients(amtCoffee, amtMilk, amtSugar, amtChocolate);
+        			if (made) {
+        				change = amtPaid - price;
+        				outcome = PurchaseOutcome.PURCHASED;
+        				purchased(recipeToPurchase, recipe, price, amtPaid, recipe.amounts());
+        			} else {
+        				outcome = PurchaseOutcome.INSUFFICIENT_INVENTORY;
+        			}
+        		} else {
+        			outcome = PurchaseOutcome.INSUFFICIENT_FUNDS;
+        		}
         	}
-        } else {
-        	change = amtPaid;
         }
         
+        if (timed) {
+        	completed(recipeToPurchase, outcome, System.nanoTime() - start);
+        }
         return change;
     }
 
+    /**
+     * Takes the ingredients of the recipe at the given slot out of
+     * the inventory while payment is taken, and returns the
+     * reservation id, or -1 if there is no such recipe or not 
+     * enough ingredients.  The price is fixed when the reservation
+     * is taken.  The reservation is completed with makeReservedCoffee
+     * or cancelled within the lease; after that its ingredients go
+     * back into the stock.
+     * @param recipeToPurchase
+     * @param lease
+     * @param unit
+     * @return long
+     */
+    public long reserveCoffee(int recipeToPurchase, long lease, TimeUnit unit) {
+    	Recipe[] recipes = recipeBook.getRecipes();
+    	if (recipeToPurchase < 0 || recipeToPurchase >= recipes.length || recipes[recipeToPurchase] == null) {
+    		return -1;
+    	}
+    	ReservedOrder order = new ReservedOrder(recipeToPurchase, recipes[recipeToPurchase]);
+    	return inventory.reserve(order.amounts, lease, unit, order);
+    }
+    
+    /**
+     * Returns the change of a purchase whose ingredients were
+     * reserved with reserveCoffee, or the user's money if the 
+     * reservation is no longer open.  Listeners hear about the
+     * purchase as they do for any other.  If the amount paid is
+     * less than the price, the reservation is left open.
+     * @param reservation
+     * @param amtPaid
+     * @return int
+     */
+    public int makeReservedCoffee(long reservation, int amtPaid) {
+    	boolean timed = !listeners.isEmpty();
+    	long start = timed ? System.nanoTime() : 0;
+    	int change = amtPaid;
+    	// An expired reservation no longer holds the ingredients
+    	PurchaseOutcome outcome = PurchaseOutcome.INSUFFICIENT_INVENTORY;
+    	ReservedOrder order = (ReservedOrder) inventory.getOrder(reservation);
+    	if (order != null) {
+    		if (order.price > amtPaid) {
+    			outcome = PurchaseOutcome.INSUFFICIENT_FUNDS;
+    		} else if (inventory.commit(reservation)) {
+    			change = amtPaid - order.price;
+    			outcome = PurchaseOutcome.PURCHASED;
+    			purchased(order.slot, order.recipe, order.price, amtPaid, order.amounts);
+    		}
+    	}
+    	if (timed && order != null) {
+    		completed(order.slot, outcome, System.nanoTime() - start);
+    	}
+    	return change;
+    }
+    
+    /**
+     * Puts the ingredients of a reservation taken with reserveCoffee
+     * back into the stock.  Returns false if there is no such open
+     * reservation.
+     * @param reservation
+     * @return boolean
+     */
+    public boolean cancelReservation(long reservation) {
+    	return inventory.cancel(reservation);
+    }
+
+    /**
+     * Processes a batch of purchases and returns the change for
+     * each one.  The recipes are resolved once and the inventory
+     * is updated in a single pass, with the same results as
+     * calling makeCoffee for each order in turn.
+     * @param recipeIndexes
+     * @param amountsPaid
+     * @return int []
+     */
+    public int[] makeCoffeeBatch(int[] recipeIndexes, int[] amountsPaid) {
+    	return makeCoffeeBatch(recipeIndexes, amountsPaid, null);
+    }
+    
+    /**
+     * Processes a batch of purchases and returns the change for
+     * each one.  If outcomes is not null, outcomes[i] is set to
+     * the reason order i did or did not go through.
+     * @param recipeIndexes
+     * @param amountsPaid
+     * @param outcomes
+     * @return int []
+     */
+    public int[] makeCoffeeBatch(int[] recipeIndexes, int[] amountsPaid, PurchaseOutcome[] outcomes) {
+    	int n = recipeIndexes.length;
+    	if (amountsPaid.length != n || (outcomes != null && outcomes.length < n)) {
+    		throw new IllegalArgumentException("Each order needs one recipe index, one payment and one outcome");
+    	}
+    	boolean timed = !listeners.isEmpty();
+    	long start = timed ? System.nanoTime() : 0;
+    	Recipe[] recipes = recipeBook.getRecipes();
+    	Recipe[] orders = new Recipe[n];
+    	int[] prices = new int[n];
+    	int[] change = new int[n];
+    	PurchaseOutcome[] result = outcomes != null ? outcomes : new PurchaseOutcome[n];
+    	
+    	for (int i = 0; i < n; i++) {
+    		int index = recipeIndexes[i];
+    		Recipe recipe = index >= 0 && index < recipes.length ? recipes[index] : null;
+    		if (recipe == null) {
+    			result[i] = PurchaseOutcome.INVALID_RECIPE;
+    		} else {
+    			prices[i] = recipe.getPrice();
+    			if (prices[i] <= amountsPaid[i]) {
+    				orders[i] = recipe;
+    			} else {
+    				result[i] = PurchaseOutcome.INSUFFICIENT_FUNDS;
+    			}
+    		}
+    	}
+    	
+    	boolean[] made = new boolean[n];
+    	inventory.useIngredients(orders, made);
+    	
+    	for (int i = 0; i < n; i++) {
+    		if (made[i]) {
+    			change[i] = amountsPaid[i] - prices[i];
+    			result[i] = PurchaseOutcome.PURCHASED;
+    			purchased(recipeIndexes[i], orders[i], prices[i], amountsPaid[i], orders[i].amounts());
+    		} else {
+    			change[i] = amountsPaid[i];
+    			if (orders[i] != null) {
+    				result[i] = PurchaseOutcome.INSUFFICIENT_INVENTORY;
+    			}
+    		}
+    	}
+    	if (timed && n > 0) {
+    		// Each order is charged an equal share of the batch
+    		long elapsed = (System.nanoTime() - start) / n;
+    		for (int i = 0; i < n; i++) {
+    			completed(recipeIndexes[i], result[i], elapsed);
+    		}
+    	}
+    	return change;
+    }
+    
+    /**
+     * Counts a beverage that has been made and tells every listener
+     * about it.  The
+     * stock is already taken, so a listener that throws is counted
+     * and skipped, and the customer still gets the change.
+     */
+    private void purchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+    	purchases.increment();
+    	for (CoffeeMakerListener listener : listeners) {
+    		try {
+    			listener.coffeePurchased(slot, recipe, price, amtPaid, amounts);
+    		} catch (RuntimeException e) {
+    			listenerFailures.increment();
+    		}
+    	}
+    }
+    
+    /**
+     * Tells every listener how an order ended.  A listener that
+     * throws is counted and skipped.
+     */
+    private void completed(int slot, PurchaseOutcome outcome, long elapsed) {
+    	for (CoffeeMakerListener listener : listeners) {
+    		try {
+    			listener.orderCompleted(slot, outcome, elapsed);
+    		} catch (RuntimeException e) {
+    			listenerFailures.increment();
+    		}
+    	}
+    }
+    
+    /**
+     * Returns the number of beverages made, by any kind of order.
+     * @return long
+     */
+    public long getPurchases() {
+    	return purchases.sum();
+    }
+    
+    /**
+     * Returns the number of times inventory was added.
+     * @return long
+     */
+    public long getRestocks() {
+    	return restocks.sum();
+    }
+    
+    /**
+     * Returns the number of times a listener threw while an order
+     * was reported to it, e.g. a Journal that was closed or could
+     * not grow its file.  The orders themselves went through.
+     * @return long
+     */
+    public long getListenerFailures() {
+    	return listenerFailures.sum();
+    }
+
 	/**
-	 * Returns the list of Recipes in the RecipeBook.
+	 * Returns the list of Recipes in the RecipeBook.  The array
+	 * is a shared snapshot and must not be modified.
 	 * @return Recipe []
 	 */
-	public synchronized Recipe[] getRecipes() {
+	public Recipe[] getRecipes() {
 		return recipeBook.getRecipes();
 	}
+	
+	/**
+	 * Returns the slot of the recipe with the given name, or -1
+	 * if there is no such recipe.
+	 * @param name
+	 * @return int
+	 */
+	public int indexOf(String name) {
+		return recipeBook.indexOf(name);
+	}
+	
+	/**
+	 * Returns how many more of the recipe in the given slot can be
+	 * made from the current stock, or 0 if the slot is empty.  A
+	 * recipe that uses no ingredients has Integer.MAX_VALUE
+	 * servings.  No lock is taken unless the stock has changed
+	 * since the servings were last read, when the stock is copied
+	 * under the inventory's lock.
+	 * @param slot
+	 * @return int
+	 */
+	public int getServings(int slot) {
+		int[] table = servings.getServings();
+		return slot >= 0 && slot < table.length ? table[slot] : 0;
+	}
+	
+	/**
+	 * Returns the servings left of every slot, as getServings(int)
+	 * would return them.
+	 * @return int []
+	 */
+	public int[] getServings() {
+		return servings.getServings().clone();
+	}
+	
+	/**
+	 * Returns the search index over the recipes, e.g. to find
+	 * the recipes whose names start with a prefix or that need
+	 * no milk.  Queries return the matching slots of the menu the
+	 * index was published with; a recipe change publishes a new
+	 * index rather than changing this one.
+	 * @return RecipeIndex
+	 */
+	public RecipeIndex getRecipeIndex() {
+		return recipeBook.getIndex();
+	}
+	
+	/**
+	 * Returns the inventory, for monitoring.
+	 * @return Inventory
+	 */
+	Inventory inventory() {
+		return inventory;
+	}
+	
+	/**
+	 * Returns the current menu snapshot without locking.
+	 * @return RecipeMenu
+	 */
+	public RecipeMenu getMenu() {
+		return recipeBook.getMenu();
+	}
+	
+	/**
+	 * A rendering of the inventory and the version it was taken at.
+	 */
+	private static final class InventoryText {
+		final long version;
+		final String text;
+		
+		InventoryText(long version, String text) {
+			this.version = version;
+			this.text = text;
+		}
+	}
+	
+	/**
+	 * A purchase whose ingredients are held by a reservation.
+	 */
+	private static final class ReservedOrder {
+		final int slot;
+		final Recipe recipe;
+		final int price;
+		/** Units reserved, by ingredient id */
+		final int[] amounts;
+		
+		ReservedOrder(int slot, Recipe recipe) {
+			this.slot = slot;
+			this.recipe = recipe;
+			this.price = recipe.getPrice();
+			this.amounts = recipe.amounts().clone();
+		}
+	}
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * Receives every change a CoffeeMaker makes to its recipes and
+ * inventory, after the change has been made, and the outcome of
+ * every order.  Listeners are
+ * called on the thread that made the change and should return
+ * quickly.  An exception thrown while an order is reported is
+ * counted by CoffeeMaker.getListenerFailures and does not undo or
+ * fail the order.
+ */
+public interface CoffeeMakerListener {
+
+	/**
+	 * Called after a recipe is added at the given slot.
+	 * @param slot
+	 * @param r
+	 */
+	default void recipeAdded(int slot, Recipe r) {
+	}
+
+	/**
+	 * Called after the recipe at the given slot is deleted.
+	 * @param slot
+	 */
+	default void recipeDeleted(int slot) {
+	}
+
+	/**
+	 * Called after the recipe at the given slot is replaced.
+	 * @param slot
+	 * @param r the new recipe
+	 */
+	default void recipeEdited(int slot, Recipe r) {
+	}
+
+	/**
+	 * Called after inventory is added, with the units added by
+	 * Ingredient id.  Ids past the end of the array had nothing
+	 * added.  The array must not be modified or kept.
+	 * @param amounts
+	 */
+	default void inventoryAdded(int[] amounts) {
+	}
+
+	/**
+	 * Called after a beverage is made, with what was paid for it
+	 * and the units that were taken from the inventory, by
+	 * Ingredient id.  The array must not be modified or kept.
+	 * @param slot
+	 * @param recipe
+	 * @param price
+	 * @param amtPaid
+	 * @param amounts
+	 */
+	default void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+	}
+
+	/**
+	 * Called after every order, whether or not a beverage was
+	 * made, with the time the coffee maker took over it.
+	 * @param slot the recipe index asked for, which may be invalid
+	 * @param outcome
+	 * @param elapsedNanos
+	 */
+	default void orderCompleted(int slot, PurchaseOutcome outcome, long elapsedNanos) {
+	}
+}
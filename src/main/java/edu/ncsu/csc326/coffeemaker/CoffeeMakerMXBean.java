@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * Live numbers for one coffee maker, as exposed over JMX by
+ * CoffeeMakerMonitor.  None of them takes the inventory lock.
+ */
+public interface CoffeeMakerMXBean {
+
+	/**
+	 * @return units of coffee in the inventory
+	 */
+	int getCoffee();
+
+	/**
+	 * @return units of milk in the inventory
+	 */
+	int getMilk();
+
+	/**
+	 * @return units of sugar in the inventory
+	 */
+	int getSugar();
+
+	/**
+	 * @return units of chocolate in the inventory
+	 */
+	int getChocolate();
+
+	/**
+	 * @return number of recipes on the menu
+	 */
+	int getRecipeCount();
+
+	/**
+	 * @return beverages made since the coffee maker was created
+	 */
+	long getPurchases();
+
+	/**
+	 * @return restocks since the coffee maker was created
+	 */
+	long getRestocks();
+
+	/**
+	 * @return total nanoseconds threads have waited for the inventory lock
+	 */
+	long getLockWaitNanos();
+}
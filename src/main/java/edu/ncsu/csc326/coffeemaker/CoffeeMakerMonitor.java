@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes a coffee maker's inventory levels and counters as an
+ * MXBean named edu.ncsu.csc326.coffeemaker:type=CoffeeMaker,name=...
+ * on the platform MBean server.  Levels are read from the
+ * inventory's fields and the counters from the coffee maker's own,
+ * so reading an attribute never blocks a purchase and the monitor
+ * adds no listener to the purchase path.
+ */
+public class CoffeeMakerMonitor implements CoffeeMakerMXBean {
+
+	private final CoffeeMaker coffeeMaker;
+	private final ObjectName objectName;
+
+	private CoffeeMakerMonitor(CoffeeMaker coffeeMaker, ObjectName objectName) {
+		this.coffeeMaker = coffeeMaker;
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Registers an MXBean for the coffee maker under the given
+	 * name.
+	 * @param coffeeMaker
+	 * @param name
+	 * @return CoffeeMakerMonitor
+	 * @throws JMException if the name is taken
+	 */
+	public static CoffeeMakerMonitor register(CoffeeMaker coffeeMaker, String name) throws JMException {
+		ObjectName objectName = new ObjectName("edu.ncsu.csc326.coffeemaker:type=CoffeeMaker,name=" 
+				+ ObjectName.quote(name));
+		CoffeeMakerMonitor monitor = new CoffeeMakerMonitor(coffeeMaker, objectName);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, objectName);
+		return monitor;
+	}
+
+	/**
+	 * Removes the MXBean.
+	 * @throws JMException
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+	}
+
+	/**
+	 * Returns the name the MXBean is registered under.
+	 * @return ObjectName
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	public int getCoffee() {
+		return coffeeMaker.inventory().getCoffee();
+	}
+
+	public int getMilk() {
+		return coffeeMaker.inventory().getMilk();
+	}
+
+	public int getSugar() {
+		return coffeeMaker.inventory().getSugar();
+	}
+
+	public int getChocolate() {
+		return coffeeMaker.inventory().getChocolate();
+	}
+
+	public int getRecipeCount() {
+		return coffeeMaker.getMenu().getRecipeCount();
+	}
+
+	public long getPurchases() {
+		return coffeeMaker.getPurchases();
+	}
+
+	public long getRestocks() {
+		return coffeeMaker.getRestocks();
+	}
+
+	public long getLockWaitNanos() {
+		return coffeeMaker.inventory().getLockWaitNanos();
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.function.LongSupplier;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+
+/**
+ * Estimates how long each ingredient will last at the current
+ * demand, so that restocks can be scheduled before a coffee maker
+ * starts turning orders away.  Add it with CoffeeMaker.addListener.
+ *
+ * For each ingredient, the units used so far are regressed against
+ * time over the most recent window of sales; the slope is the
+ * demand in units per second.  Each sale adds one point to each
+ * regression and removes the point that falls out of the window,
+ * so an update costs the same however many sales have been seen.
+ * Restocks do not disturb the estimates, since only use is
+ * regressed.  An estimate also counts the time since the last
+ * sale, in which nothing was used, so demand fades once sales
+ * stop rather than staying at its last value.  Only the four
+ * standard ingredients are forecast.
+ */
+public class DepletionForecaster implements CoffeeMakerListener {
+
+	private static final int COFFEE = 0;
+	private static final int MILK = 1;
+	private static final int SUGAR = 2;
+	private static final int CHOCOLATE = 3;
+	private static final int INGREDIENTS = 4;
+
+	private final CoffeeMaker coffeeMaker;
+	/** Source of System.nanoTime style times */
+	private final LongSupplier clock;
+	private final long origin;
+
+	private final SimpleRegression[] regressions = new SimpleRegression[INGREDIENTS];
+	/** Units of each ingredient used since the forecaster was created */
+	private final double[] used = new double[INGREDIENTS];
+	/** The points in the window, oldest at next once it is full */
+	private final double[] times;
+	private final double[][] totals;
+	private int next;
+	private int points;
+
+	/**
+	 * Creates a forecaster for the coffee maker that bases its
+	 * estimates on the given number of most recent sales.
+	 * @param coffeeMaker
+	 * @param window
+	 */
+	public DepletionForecaster(CoffeeMaker coffeeMaker, int window) {
+		this(coffeeMaker, window, System::nanoTime);
+	}
+
+	/**
+	 * Creates a forecaster that reads the time from the clock.
+	 * @param coffeeMaker
+	 * @param window
+	 * @param clock
+	 */
+	DepletionForecaster(CoffeeMaker coffeeMaker, int window, LongSupplier clock) {
+		if (window < 2) {
+			throw new IllegalArgumentException("A forecast needs a window of at least two sales");
+		}
+		this.coffeeMaker = coffeeMaker;
+		this.clock = clock;
+		origin = clock.getAsLong();
+		times = new double[window];
+		totals = new double[INGREDIENTS][window];
+		for (int i = 0; i < INGREDIENTS; i++) {
+			regressions[i] = new SimpleRegression();
+		}
+	}
+
+	@Override
+	public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+		observe(clock.getAsLong(), amounts[COFFEE], amounts[MILK], amounts[SUGAR], amounts[CHOCOLATE]);
+	}
+
+	/**
+	 * Adds a sale made at the given time to the window.
+	 * @param nanoTime
+	 * @param amtCoffee
+	 * @param amtMilk
+	 * @param amtSugar
+	 * @param amtChocolate
+	 */
+	synchronized void observe(long nanoTime, int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) {
+		double time = (nanoTime - origin) / 1e9;
+		used[COFFEE] += amtCoffee;
+		used[MILK] += amtMilk;
+		used[SUGAR] += amtSugar;
+		used[CHOCOLATE] += amtChocolate;
+		boolean full = points == times.length;
+		for (int i = 0; i < INGREDIENTS; i++) {
+			if (full) {
+				regressions[i].removeData(times[next], totals[i][next]);
+			}
+			regressions[i].addData(time, used[i]);
+			totals[i][next] = used[i];
+		}
+		times[next] = time;
+		next = (next + 1) % times.length;
+		if (!full) {
+			points++;
+		}
+	}
+
+	/**
+	 * Returns the estimated seconds until the coffee runs out.
+	 * @return double
+	 */
+	public double getCoffeeSecondsLeft() {
+		return secondsLeft(COFFEE, coffeeMaker.inventory().getCoffee());
+	}
+
+	/**
+	 * Returns the estimated seconds until the milk runs out.
+	 * @return double
+	 */
+	public double getMilkSecondsLeft() {
+		return secondsLeft(MILK, coffeeMaker.inventory().getMilk());
+	}
+
+	/**
+	 * Returns the estimated seconds until the sugar runs out.
+	 * @return double
+	 */
+	public double getSugarSecondsLeft() {
+		return secondsLeft(SUGAR, coffeeMaker.inventory().getSugar());
+	}
+
+	/**
+	 * Returns the estimated seconds until the chocolate runs out.
+	 * @return double
+	 */
+	public double getChocolateSecondsLeft() {
+		return secondsLeft(CHOCOLATE, coffeeMaker.inventory().getChocolate());
+	}
+
+	/**
+	 * Returns the estimated seconds until the first ingredient runs
+	 * out, which is when the machine should be restocked by.
+	 * @return double
+	 */
+	public double getSecondsLeft() {
+		return Math.min(Math.min(getCoffeeSecondsLeft(), getMilkSecondsLeft()),
+				Math.min(getSugarSecondsLeft(), getChocolateSecondsLeft()));
+	}
+
+	/**
+	 * Returns the seconds until the level is used up at the
+	 * ingredient's current demand: 0 if it already has, and
+	 * infinity if there is no demand or too few sales to tell.
+	 */
+	private synchronized double secondsLeft(int ingredient, int level) {
+		if (level <= 0) {
+			return 0;
+		}
+		double demand;
+		SimpleRegression regression = regressions[ingredient];
+		double now = (clock.getAsLong() - origin) / 1e9;
+		double last = times[(next + times.length - 1) % times.length];
+		if (points > 0 && now > last) {
+			// Nothing has been used since the last sale
+			regression.addData(now, used[ingredient]);
+			demand = regression.getSlope();
+			regression.removeData(now, used[ingredient]);
+		} else {
+			demand = regression.getSlope();
+		}
+		if (Double.isNaN(demand) || demand <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return level / demand;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * Ingredient ids.  Recipes and inventories index their amounts by
+ * these dense ids.  Every recipe and inventory has the STANDARD
+ * four; an inventory created with extra ingredients, e.g. syrups,
+ * numbers them from STANDARD on, in the order they were given.
+ */
+public final class Ingredient {
+
+	public static final int COFFEE = 0;
+	public static final int MILK = 1;
+	public static final int SUGAR = 2;
+	public static final int CHOCOLATE = 3;
+
+	/** Number of ingredients every recipe and inventory has */
+	public static final int STANDARD = 4;
+
+	/** Names of the standard ingredients, by id */
+	static final String[] STANDARD_NAMES = {"Coffee", "Milk", "Sugar", "Chocolate"};
+
+	private Ingredient() {
+	}
+}
@@ -13,29 +13,166 @@
  */
 package edu.ncsu.csc326.coffeemaker;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
 import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
 
 /**
  * @author Sarah Heckman
  *
- * Inventory for the coffee maker
+ * Inventory for the coffee maker.  Stock is kept in an array
+ * indexed by Ingredient id, so an inventory can carry any number
+ * of ingredients besides the standard four.
  */
 public class Inventory {
     
-    private static int coffee;
-    private static int milk;
-    private static int sugar;
-    private static int chocolate;
+    /** Thrown, without a stack trace, for malformed or negative units */
+    private static final InventoryException INVALID_COFFEE = invalid("coffee");
+    private static final InventoryException INVALID_MILK = invalid("milk");
+    private static final InventoryException INVALID_SUGAR = invalid("sugar");
+    private static final InventoryException INVALID_CHOCOLATE = invalid("chocolate");
+    
+    /** Names of the ingredients, by id */
+    private final String[] names;
+    /** 
+     * Units of each ingredient, by id.  Only written under the lock, 
+     * followed by a write of version; readers of a single amount that
+     * read version first see every change made before it.  A change
+     * can span several amounts, so copies are taken under the lock.
+     */
+    private final int[] stock;
+    
+    /** Changes count; bumped under the lock after each change to the stock */
+    private volatile long version;
+    
+    /** Open reservations by id; guards the leases and the next id too */
+    private final Map<Long, Reservation> reservations = new HashMap<Long, Reservation>();
+    /** Open reservations by deadline */
+    private final TreeSet<Reservation> leases = new TreeSet<Reservation>();
+    private long nextReservation = 1;
+    /** Units of closed reservations that no longer fitted the stock */
+    private final LongAdder discardedUnits = new LongAdder();
+    
+    /** Guards every change to the stock */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Time threads have spent waiting for the lock */
+    private final LongAdder lockWaitNanos = new LongAdder();
     
     /**
      * Creates a coffee maker inventory object and
      * fills each item in the inventory with 15 units.
      */
     public Inventory() {
-    	setCoffee(15);
-    	setMilk(15);
-    	setSugar(15);
-    	setChocolate(15);
+    	this(new String[0]);
+    }
+    
+    /**
+     * Creates an inventory that also stocks the named extra
+     * ingredients, with ids from Ingredient.STANDARD on.  The
+     * standard ingredients start with 15 units and the extra
+     * ones with none.
+     * @param extraIngredients
+     */
+    public Inventory(String... extraIngredients) {
+    	names = new String[Ingredient.STANDARD + extraIngredients.length];
+    	System.arraycopy(Ingredient.STANDARD_NAMES, 0, names, 0, Ingredient.STANDARD);
+    	System.arraycopy(extraIngredients, 0, names, Ingredient.STANDARD, extraIngredients.length);
+    	stock = new int[names.length];
+    	for (int i = 0; i < Ingredient.STANDARD; i++) {
+    		stock[i] = 15;
+    	}
+    }
+    
+    /**
+     * Returns the number of ingredients, standard and extra.
+     * @return int
+     */
+    public int getIngredientCount() {
+    	return names.length;
+    }
+    
+    /**
+     * Returns the name of the ingredient with the given id.
+     * @param ingredient
+     * @return String
+     */
+    public String getIngredientName(int ingredient) {
+    	return names[ingredient];
+    }
+    
+    /**
+     * Returns the current units of the ingredient with the
+     * given id.
+     * @param ingredient
+     * @return int
+     */
+    public int getStock(int ingredient) {
+    	readBarrier();
+    	return stock[ingredient];
+    }
+    
+    /**
+     * Returns the current units of every ingredient, by id, as they
+     * were between two changes.  Callers that cache what they derive
+     * from the stock, keyed by getVersion, only need to call this
+     * after the version has moved.
+     * @return int []
+     */
+    public int[] getStock() {
+    	lock();
+    	try {
+    		return stock.clone();
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Reads the version, which makes every change to the stock
+     * before it visible to this thread without taking the lock.
+     */
+    private long readBarrier() {
+    	return version;
+    }
+    
+    /**
+     * Sets the units of the ingredient with the given id.
+     * Negative amounts are ignored.
+     * @param ingredient
+     * @param units
+     */
+    public void setStock(int ingredient, int units) {
+    	lock();
+    	try {
+    		if (units >= 0) {
+    			stock[ingredient] = units;
+    			version++;
+    		}
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Adds units of the ingredient with the given id.
+     * @param ingredient
+     * @param units
+     * @throws InventoryException
+     */
+    public void addStock(int ingredient, int units) throws InventoryException {
+    	lock();
+    	try {
+    		checkUnits(units, stock[ingredient], unitName(ingredient));
+    		stock[ingredient] += units;
+    		version++;
+    	} finally {
+    		unlock();
+    	}
     }
     
     /**
@@ -44,7 +181,7 @@ public class Inventory {
      * @return int
      */
     public int getChocolate() {
-        return chocolate;
+        return getStock(Ingredient.CHOCOLATE);
     }
     
     /**
@@ -52,11 +189,8 @@ public class Inventory {
      * to the specified amount.
      * @param chocolate
      */
-    public synchronized void setChocolate(int chocolate) {
-    	if(chocolate >= 0) {
-    		Inventory.chocolate = chocolate;
-    	}
-        
+    public void setChocolate(int chocolate) {
+    	setStock(Ingredient.CHOCOLATE, chocolate);
     }
     
     /**
@@ -65,18 +199,18 @@ public class Inventory {
      * @param chocolate
      * @throws InventoryException
      */
-    public synchronized void addChocolate(String chocolate) throws InventoryException {
-    	int amtChocolate = 0;
-    	try {
-    		amtChocolate = Integer.parseInt(chocolate);
-    	} catch (NumberFormatException e) {
-    		throw new InventoryException("Units of chocolate must be a positive integer");
-    	}
-		if (amtChocolate >= 0) {
-			Inventory.chocolate += amtChocolate;
-		} else {
-			throw new InventoryException("Units of chocolate must be a positive integer");
-		}
+    public void addChocolate(String chocolate) throws InventoryException {
+    	addChocolate(parseUnits(chocolate, "chocolate"));
+    }
+    
+    /**
+     * Add the number of chocolate units in the inventory 
+     * to the current amount of chocolate units.
+     * @param chocolate
+     * @throws InventoryException
+     */
+    public void addChocolate(int chocolate) throws InventoryException {
+    	addStock(Ingredient.CHOCOLATE, chocolate);
     }
     
     /**
@@ -85,7 +219,7 @@ public class Inventory {
      * @return int
      */
     public int getCoffee() {
-        return coffee;
+        return getStock(Ingredient.COFFEE);
     }
     
     /**
@@ -93,10 +227,8 @@ public class Inventory {
      * to the specified amount.
      * @param coffee
      */
-    public synchronized void setCoffee(int coffee) {
-    	if(coffee >= 0) {
-    		Inventory.coffee = coffee;
-    	}
+    public void setCoffee(int coffee) {
+    	setStock(Ingredient.COFFEE, coffee);
     }
     
     /**
@@ -105,18 +237,18 @@ public class Inventory {
      * @param coffee
      * @throws InventoryException
      */
-    public synchronized void addCoffee(String coffee) throws InventoryException {
-    	int amtCoffee = 0;
-    	try {
-    		amtCoffee = Integer.parseInt(coffee);
-    	} catch (NumberFormatException e) {
-    		throw new InventoryException("Units of coffee must be a positive integer");
-    	}
-		if (amtCoffee >= 0) {
-			Inventory.coffee += amtCoffee;
-		} else {
-			throw new InventoryException("Units of coffee must be a positive integer");
-		}
+    public void addCoffee(String coffee) throws InventoryException {
+    	addCoffee(parseUnits(coffee, "coffee"));
+    }
+    
+    /**
+     * Add the number of coffee units in the inventory 
+     * to the current amount of coffee units.
+     * @param coffee
+     * @throws InventoryException
+     */
+    public void addCoffee(int coffee) throws InventoryException {
+    	addStock(Ingredient.COFFEE, coffee);
     }
     
     /**
@@ -125,7 +257,7 @@ public class Inventory {
      * @return int
      */
     public int getMilk() {
-        return milk;
+        return getStock(Ingredient.MILK);
     }
     
     /**
@@ -133,10 +265,8 @@ public class Inventory {
      * to the specified amount.
      * @param milk
      */
-    public synchronized void setMilk(int milk) {
-    	if(milk >= 0) {
-    		Inventory.milk = milk;
-    	}
+    public void setMilk(int milk) {
+    	setStock(Ingredient.MILK, milk);
     }
     
     /**
@@ -145,18 +275,18 @@ public class Inventory {
      * @param milk
      * @throws InventoryException
      */
-    public synchronized void addMilk(String milk) throws InventoryException {
-    	int amtMilk = 0;
-    	try {
-    		amtMilk = Integer.parseInt(milk);
-    	} catch (NumberFormatException e) {
-    		throw new InventoryException("Units of milk must be a positive integer");
-    	}
-		if (amtMilk >= 0) {
-			Inventory.milk += amtMilk;
-		} else {
-			throw new InventoryException("Units of milk must be a positive integer");
-		}
+    public void addMilk(String milk) throws InventoryException {
+    	addMilk(parseUnits(milk, "milk"));
+    }
+    
+    /**
+     * Add the number of milk units in the inventory 
+     * to the current amount of milk units.
+     * @param milk
+     * @throws InventoryException
+     */
+    public void addMilk(int milk) throws InventoryException {
+    	addStock(Ingredient.MILK, milk);
     }
     
     /**
@@ -165,7 +295,7 @@ public class Inventory {
      * @return int
      */
     public int getSugar() {
-        return sugar;
+        return getStock(Ingredient.SUGAR);
     }
     
     /**
@@ -173,10 +303,18 @@ public class Inventory {
      * to the specified amount.
      * @param sugar
      */
-    public synchronized void setSugar(int sugar) {
-    	if(sugar >= 0) {
-    		Inventory.sugar = sugar;
-    	}
+    public void setSugar(int sugar) {
+    	setStock(Ingredient.SUGAR, sugar);
+    }
+    
+    /**
+     * Add the number of sugar units in the inventory 
+     * to the current amount of sugar units.
+     * @param sugar
+     * @throws InventoryException
+     */
+    public void addSugar(String sugar) throws InventoryException {
+    	addSugar(parseUnits(sugar, "sugar"));
     }
     
     /**
@@ -185,18 +323,60 @@ public class Inventory {
      * @param sugar
      * @throws InventoryException
      */
-    public synchronized void addSugar(String sugar) throws InventoryException {
-    	int amtSugar = 0;
+    public void addSugar(int sugar) throws InventoryException {
+    	addStock(Ingredient.SUGAR, sugar);
+    }
+    
+    /**
+     * Adds units of all four ingredients at once.  Every amount
+     * is checked before any stock changes, so a rejected restock
+     * leaves the inventory as it was.
+     * @param amtCoffee
+     * @param amtMilk
+     * @param amtSugar
+     * @param amtChocolate
+     * @throws InventoryException
+     */
+    public void addInventory(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) 
+    		throws InventoryException {
+    	lock();
+    	try {
+	    	checkUnits(amtCoffee, stock[Ingredient.COFFEE], "coffee");
+	    	checkUnits(amtMilk, stock[Ingredient.MILK], "milk");
+	    	checkUnits(amtSugar, stock[Ingredient.SUGAR], "sugar");
+	    	checkUnits(amtChocolate, stock[Ingredient.CHOCOLATE], "chocolate");
+	    	stock[Ingredient.COFFEE] += amtCoffee;
+	    	stock[Ingredient.MILK] += amtMilk;
+	    	stock[Ingredient.SUGAR] += amtSugar;
+	    	stock[Ingredient.CHOCOLATE] += amtChocolate;
+	    	version++;
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Adds units of each ingredient, by id.  Every amount is
+     * checked before any stock changes.
+     * @param amounts
+     * @throws InventoryException if an amount is negative, would
+     * overflow, or is for an ingredient this inventory does not have
+     */
+    public void addInventory(int[] amounts) throws InventoryException {
+    	lock();
     	try {
-    		amtSugar = Integer.parseInt(sugar);
-    	} catch (NumberFormatException e) {
-    		throw new InventoryException("Units of sugar must be a positive integer");
+    		checkIngredients(amounts, stock.length);
+    		int n = Math.min(amounts.length, stock.length);
+    		for (int i = 0; i < n; i++) {
+    			checkUnits(amounts[i], stock[i], unitName(i));
+    		}
+    		for (int i = 0; i < n; i++) {
+    			stock[i] += amounts[i];
+    		}
+    		version++;
+    	} finally {
+    		unlock();
     	}
-		if (amtSugar >= 0) {
-			Inventory.sugar += amtSugar;
-		} else {
-			throw new InventoryException("Units of sugar must be a positive integer");
-		}
     }
     
     /**
@@ -205,39 +385,381 @@ public class Inventory {
      * @param r
      * @return boolean
      */
-    protected synchronized boolean enoughIngredients(Recipe r) {
-        boolean isEnough = true;
-        if(Inventory.coffee < r.getAmtCoffee()) {
-            isEnough = false;
-        }
-        if(Inventory.milk < r.getAmtMilk()) {
-            isEnough = false;
-        }
-        if(Inventory.sugar < r.getAmtSugar()) {
-            isEnough = false;
-        }
-        if(Inventory.chocolate < r.getAmtChocolate()) {
-            isEnough = false;
-        }
-        return isEnough;
+    protected boolean enoughIngredients(Recipe r) {
+    	int[] amounts = r.amounts();
+    	lock();
+    	try {
+    		return enough(amounts);
+    	} finally {
+    		unlock();
+    	}
     }
     
     /**
      * Removes the ingredients used to make the specified 
-     * recipe.  Assumes that the user has checked that there
-     * are enough ingredients to make 
+     * recipe.  Returns false, and removes nothing, if there
+     * are not enough ingredients to make it.
      * @param r
+     * @return boolean
+     */
+    public boolean useIngredients(Recipe r) {
+    	if (r.getIngredientCount() > Ingredient.STANDARD) {
+    		return useIngredients(r.amounts());
+    	}
+    	return useIngredients(r.getAmtCoffee(), r.getAmtMilk(), r.getAmtSugar(), r.getAmtChocolate());
+    }
+    
+    /**
+     * Removes the given units of each ingredient if there are 
+     * enough of all four, otherwise leaves the inventory unchanged.
+     * @param amtCoffee
+     * @param amtMilk
+     * @param amtSugar
+     * @param amtChocolate
+     * @return boolean
      */
-    public synchronized boolean useIngredients(Recipe r) {
-    	if (enoughIngredients(r)) {
-	    	Inventory.coffee -= r.getAmtCoffee();
-	    	Inventory.milk -= r.getAmtMilk();
-	    	Inventory.sugar -= r.getAmtSugar();
-	    	Inventory.chocolate -= r.getAmtChocolate();
-	    	return true;
-    	} else {
+    public boolean useIngredients(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) {
+    	lock();
+    	try {
+	    	if (stock[Ingredient.COFFEE] >= amtCoffee && stock[Ingredient.MILK] >= amtMilk 
+	    			&& stock[Ingredient.SUGAR] >= amtSugar && stock[Ingredient.CHOCOLATE] >= amtChocolate) {
+		    	stock[Ingredient.COFFEE] -= amtCoffee;
+		    	stock[Ingredient.MILK] -= amtMilk;
+		    	stock[Ingredient.SUGAR] -= amtSugar;
+		    	stock[Ingredient.CHOCOLATE] -= amtChocolate;
+		    	version++;
+		    	return true;
+	    	} else {
+	    		return false;
+	    	}
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Removes the given units of each ingredient, by id, if there
+     * are enough of all of them, otherwise leaves the inventory
+     * unchanged.  Fails if an amount is negative or is for an
+     * ingredient this inventory does not have.
+     * @param amounts
+     * @return boolean
+     */
+    public boolean useIngredients(int[] amounts) {
+    	lock();
+    	try {
+    		if (!enough(amounts)) {
+    			return false;
+    		}
+    		// enough checked that every amount past the stock is 0
+    		int n = Math.min(amounts.length, stock.length);
+    		for (int i = 0; i < n; i++) {
+    			stock[i] -= amounts[i];
+    		}
+    		version++;
+    		return true;
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Returns true if the stock covers every amount.  Called with
+     * the lock held.
+     */
+    private boolean enough(int[] amounts) {
+    	int n = Math.min(amounts.length, stock.length);
+    	boolean enough = true;
+    	for (int i = 0; i < n; i++) {
+    		// No early exit, so the loop has no branches to stop it being unrolled
+    		enough &= amounts[i] >= 0 & stock[i] >= amounts[i];
+    	}
+    	for (int i = n; i < amounts.length; i++) {
+    		enough &= amounts[i] == 0;
+    	}
+    	return enough;
+    }
+    
+    /**
+     * Removes the ingredients for a batch of orders, in order,
+     * under a single lock acquisition.  made[i] is set to true
+     * if orders[i] was made; null orders are skipped.
+     * @param orders
+     * @param made
+     */
+    public void useIngredients(Recipe[] orders, boolean[] made) {
+    	lock();
+    	try {
+	    	for (int i = 0; i < orders.length; i++) {
+	    		made[i] = orders[i] != null && useIngredients(orders[i]);
+	    	}
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Returns a stamp that changes whenever the stock does, so a
+     * reader can tell whether something it derived from the stock
+     * is still current.  Reading it takes no lock.
+     * @return long
+     */
+    public long getVersion() {
+    	return version;
+    }
+    
+    /**
+     * Takes a recipe's ingredients out of the stock and holds them
+     * under a reservation, e.g. while payment is taken and the
+     * beverage brewed.  Returns the reservation id, or -1 if there
+     * are not enough ingredients.  The reservation must be
+     * committed or cancelled within the lease; after that its
+     * ingredients go back into the stock.  A coffee maker's stock
+     * should be reserved through CoffeeMaker.reserveCoffee, so 
+     * that its listeners hear about the sale.
+     * @param r
+     * @param lease
+     * @param unit
+     * @return long
+     */
+    public long reserve(Recipe r, long lease, TimeUnit unit) {
+    	return reserve(r.amounts().clone(), lease, unit);
+    }
+    
+    /**
+     * Takes the given units of each ingredient out of the stock and
+     * holds them under a reservation.  Returns the reservation id,
+     * or -1 if there are not enough ingredients or an amount is
+     * negative.
+     * @param amtCoffee
+     * @param amtMilk
+     * @param amtSugar
+     * @param amtChocolate
+     * @param lease
+     * @param unit
+     * @return long
+     */
+    public long reserve(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate, long lease, TimeUnit unit) {
+    	return reserve(new int[] {amtCoffee, amtMilk, amtSugar, amtChocolate}, lease, unit);
+    }
+    
+    /**
+     * Takes the given units of each ingredient, by id, out of the
+     * stock and holds them under a reservation.  The array is kept
+     * by the reservation and must not be changed.  Returns the 
+     * reservation id, or -1 if there are not enough ingredients or
+     * an amount is negative.
+     * @param amounts
+     * @param lease
+     * @param unit
+     * @return long
+     */
+    public long reserve(int[] amounts, long lease, TimeUnit unit) {
+    	return reserve(amounts, lease, unit, null);
+    }
+    
+    /**
+     * Reserves the given units, by id, for an order that is kept
+     * with the reservation until it is closed.
+     * @param amounts
+     * @param lease
+     * @param unit
+     * @param order
+     * @return long
+     */
+    long reserve(int[] amounts, long lease, TimeUnit unit, Object order) {
+    	long now = System.nanoTime();
+    	expireReservations(now);
+    	if (!useIngredients(amounts)) {
+    		return -1;
+    	}
+    	synchronized (reservations) {
+    		Reservation reservation = new Reservation(nextReservation++, amounts, now + unit.toNanos(lease), order);
+    		reservations.put(reservation.id, reservation);
+    		leases.add(reservation);
+    		return reservation.id;
+    	}
+    }
+    
+    /**
+     * Keeps the ingredients of a reservation for good.  Returns
+     * false if there is no such open reservation, e.g. because its
+     * lease ran out.
+     * @param reservation
+     * @return boolean
+     */
+    public boolean commit(long reservation) {
+    	expireReservations(System.nanoTime());
+    	synchronized (reservations) {
+    		return close(reservation) != null;
+    	}
+    }
+    
+    /**
+     * Returns the order an open reservation was taken for, or null
+     * if there is no such open reservation.
+     * @param reservation
+     * @return Object
+     */
+    Object getOrder(long reservation) {
+    	synchronized (reservations) {
+    		Reservation open = reservations.get(reservation);
+    		return open != null ? open.order : null;
+    	}
+    }
+    
+    /**
+     * Puts the ingredients of a reservation back into the stock.
+     * Returns false if there is no such open reservation.
+     * @param reservation
+     * @return boolean
+     */
+    public boolean cancel(long reservation) {
+    	expireReservations(System.nanoTime());
+    	Reservation cancelled;
+    	synchronized (reservations) {
+    		cancelled = close(reservation);
+    	}
+    	if (cancelled == null) {
     		return false;
     	}
+    	release(cancelled);
+    	return true;
+    }
+    
+    /**
+     * Returns the ingredients of every reservation whose lease has
+     * run out to the stock, and returns how many there were.  This
+     * also happens on every reserve, commit and cancel, so it only
+     * needs calling to free stock while no orders are placed.
+     * @return int
+     */
+    public int expireReservations() {
+    	return expireReservations(System.nanoTime());
+    }
+    
+    /**
+     * Expires the reservations whose deadline is not after now.
+     * @param now
+     * @return int
+     */
+    int expireReservations(long now) {
+    	int expired = 0;
+    	while (true) {
+    		Reservation reservation;
+    		synchronized (reservations) {
+    			reservation = leases.isEmpty() ? null : leases.first();
+    			if (reservation == null || reservation.deadline - now > 0) {
+    				return expired;
+    			}
+    			close(reservation.id);
+    		}
+    		release(reservation);
+    		expired++;
+    	}
+    }
+    
+    /**
+     * Drops an open reservation from the map and the leases, and
+     * returns it, or null if there is none.  Called holding the
+     * reservations lock.
+     */
+    private Reservation close(long id) {
+    	Reservation reservation = reservations.remove(id);
+    	if (reservation != null) {
+    		leases.remove(reservation);
+    	}
+    	return reservation;
+    }
+    
+    /**
+     * Returns the number of open reservations.
+     * @return int
+     */
+    public int getReservationCount() {
+    	synchronized (reservations) {
+    		return reservations.size();
+    	}
+    }
+    
+    /**
+     * Returns the number of units that closed reservations could
+     * not give back because the stock had meanwhile been refilled
+     * to its limit.  Those units are dropped rather than overfilling
+     * the stock.
+     * @return long
+     */
+    public long getDiscardedUnits() {
+    	return discardedUnits.sum();
+    }
+    
+    /**
+     * Returns a closed reservation's ingredients to the stock.  If
+     * they do not all fit, each ingredient is filled to its limit
+     * and the rest is counted as discarded.
+     */
+    private void release(Reservation reservation) {
+    	try {
+    		addInventory(reservation.amounts);
+    		return;
+    	} catch (InventoryException e) {
+    		// Only possible if the stock was refilled meanwhile
+    	}
+    	for (int i = 0; i < reservation.amounts.length; i++) {
+    		int left = reservation.amounts[i];
+    		int chunk = left;
+    		// Adds the largest pieces that still fit, halving on each failure
+    		while (chunk > 0) {
+    			try {
+    				addStock(i, chunk);
+    				left -= chunk;
+    				chunk = Math.min(chunk, left);
+    			} catch (InventoryException e) {
+    				chunk /= 2;
+    			}
+    		}
+    		discardedUnits.add(left);
+    	}
+    }
+    
+    /**
+     * Returns the total time, in nanoseconds, that threads have
+     * waited for another thread to release the inventory lock.
+     * Always 0 for an inventory that takes no lock.
+     * @return long
+     */
+    public long getLockWaitNanos() {
+    	return lockWaitNanos.sum();
+    }
+    
+    /**
+     * Runs the task while holding the inventory lock, so that no
+     * purchase or restock can change the stock until it returns.
+     * @param task
+     */
+    void whileLocked(Runnable task) {
+    	lock();
+    	try {
+    		task.run();
+    	} finally {
+    		unlock();
+    	}
+    }
+    
+    /**
+     * Takes the inventory lock.  The clock is only read if the
+     * lock is held by another thread.
+     */
+    private void lock() {
+    	if (!lock.tryLock()) {
+    		long start = System.nanoTime();
+    		lock.lock();
+    		lockWaitNanos.add(System.nanoTime() - start);
+    	}
+    }
+    
+    private void unlock() {
+    	lock.unlock();
     }
     
     /**
@@ -246,19 +768,148 @@ public class Inventory {
      * @return String
      */
     public String toString() {
+    	int[] units = getStock();
+    	StringBuffer buf = new StringBuffer();
+    	for (int i = 0; i < units.length; i++) {
+    		buf.append(names[i]);
+    		buf.append(": ");
+    		buf.append(units[i]);
+    		buf.append("\n");
+    	}
+    	return buf.toString();
+    }
+    
+    /**
+     * Returns the inventory description for the given amounts.
+     * @param coffee
+     * @param milk
+     * @param sugar
+     * @param chocolate
+     * @return String
+     */
+    protected static String describe(int coffee, int milk, int sugar, int chocolate) {
     	StringBuffer buf = new StringBuffer();
     	buf.append("Coffee: ");
-    	buf.append(getCoffee());
+    	buf.append(coffee);
     	buf.append("\n");
     	buf.append("Milk: ");
-    	buf.append(getMilk());
+    	buf.append(milk);
     	buf.append("\n");
     	buf.append("Sugar: ");
-    	buf.append(getSugar());
+    	buf.append(sugar);
     	buf.append("\n");
     	buf.append("Chocolate: ");
-    	buf.append(getChocolate());
+    	buf.append(chocolate);
     	buf.append("\n");
     	return buf.toString();
     }
+    
+    /**
+     * Parses a number of units of the named ingredient.
+     * @param units
+     * @param ingredient
+     * @return int
+     * @throws InventoryException if units is not a positive integer
+     */
+    protected static int parseUnits(String units, String ingredient) throws InventoryException {
+    	int amt = Units.parse(units);
+    	if (amt == Units.INVALID) {
+    		throw invalidUnits(ingredient);
+    	}
+    	return amt;
+    }
+    
+    /**
+     * Returns the exception for units of the named ingredient
+     * that are not a positive integer.  The four ingredients
+     * share preallocated instances, so rejecting bad input
+     * does not allocate.
+     * @param ingredient
+     * @return InventoryException
+     */
+    protected static InventoryException invalidUnits(String ingredient) {
+    	switch (ingredient) {
+    	case "coffee":
+    		return INVALID_COFFEE;
+    	case "milk":
+    		return INVALID_MILK;
+    	case "sugar":
+    		return INVALID_SUGAR;
+    	case "chocolate":
+    		return INVALID_CHOCOLATE;
+    	default:
+    		return invalid(ingredient);
+    	}
+    }
+    
+    private static InventoryException invalid(String ingredient) {
+    	return new InventoryException("Units of " + ingredient + " must be a positive integer", false);
+    }
+    
+    /**
+     * Returns the lower-case name used in messages about units of
+     * the ingredient with the given id.
+     */
+    private String unitName(int ingredient) {
+    	return ingredient < Ingredient.STANDARD ? Ingredient.STANDARD_NAMES[ingredient].toLowerCase() : names[ingredient];
+    }
+    
+    /**
+     * Checks that amounts has nothing to add for ingredients past
+     * the first count.
+     * @param amounts
+     * @param count
+     * @throws InventoryException
+     */
+    protected static void checkIngredients(int[] amounts, int count) throws InventoryException {
+    	for (int i = count; i < amounts.length; i++) {
+    		if (amounts[i] != 0) {
+    			throw new InventoryException("There is no ingredient " + i);
+    		}
+    	}
+    }
+    
+    /**
+     * Checks that units can be added to the current amount
+     * of the named ingredient.
+     * @param units
+     * @param current
+     * @param ingredient
+     * @throws InventoryException if units is negative or would overflow
+     */
+    private static void checkUnits(int units, int current, String ingredient) throws InventoryException {
+    	if (units < 0) {
+    		throw invalidUnits(ingredient);
+    	}
+    	if (units > Integer.MAX_VALUE - current) {
+    		throw new InventoryException("Units of " + ingredient + " cannot exceed " + Integer.MAX_VALUE);
+    	}
+    }
+    
+    /**
+     * Ingredients held for an order that has not been committed.
+     */
+    private static final class Reservation implements Comparable<Reservation> {
+    	final long id;
+    	/** Units held, by ingredient id */
+    	final int[] amounts;
+    	/** System.nanoTime at which the lease runs out */
+    	final long deadline;
+    	/** What the units were reserved for, or null */
+    	final Object order;
+    	
+    	Reservation(long id, int[] amounts, long deadline, Object order) {
+    		this.id = id;
+    		this.amounts = amounts;
+    		this.deadline = deadline;
+    		this.order = order;
+    	}
+    	
+    	/** Orders by deadline, then by id so that no two are equal */
+    	@Override
+    	public int compareTo(Reservation other) {
+    		int order = Long.signum(deadline - other.deadline);
+    		return order != 0 ? order : Long.compare(id, other.id);
+    	}
+    }
 }
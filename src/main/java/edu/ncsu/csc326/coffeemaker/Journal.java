@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * An append-only journal of a coffee maker's purchases, restocks
+ * and recipe changes, kept in a memory-mapped file.  Register it
+ * with CoffeeMaker.addListener to record changes, and replay it
+ * into a new RecipeBook and Inventory to rebuild the machine after
+ * a restart.
+ *
+ * Appending a record only copies it into the mapping.  A
+ * background thread forces the mapping to disk once commitBatch
+ * records are waiting or the commit interval has passed (group
+ * commit), so purchases never wait for the disk.  If the process
+ * dies nothing appended is lost; if the machine dies at most the
+ * records since the last commit are lost.
+ *
+ * A Snapshot taken through CoffeeMaker.snapshot records the
+ * journal offset it matches, so a restart only replays the
+ * records written after it.
+ *
+ * Each record is an int length followed by a type byte and its
+ * fields.  The length is written last, so a record cut short
+ * reads as the end of the journal; reopening the journal clears
+ * what such a record left behind before appending over it.
+ * Recipe amounts and inventory units are written as a count
+ * followed by the units of each Ingredient id, so recipes and
+ * stock with extra ingredients replay whole.  Journals written
+ * before the count was added, whose records carry exactly the
+ * four standard ingredients, are still read.
+ */
+public class Journal implements CoffeeMakerListener, Closeable {
+
+	/** Size of each mapped region of the file */
+	static final int REGION_SIZE = 1 << 20;
+	/** Length written where the next record does not fit in a region */
+	private static final int SKIP = -1;
+
+	/** Record types with the four standard amounts, no longer written */
+	private static final byte RECIPE_ADDED_STANDARD = 1;
+	private static final byte RECIPE_DELETED = 2;
+	private static final byte RECIPE_EDITED_STANDARD = 3;
+	private static final byte INVENTORY_ADDED_STANDARD = 4;
+	private static final byte COFFEE_PURCHASED_STANDARD = 5;
+	/** Record types whose amounts are preceded by their count */
+	private static final byte RECIPE_ADDED = 6;
+	private static final byte RECIPE_EDITED = 7;
+	private static final byte INVENTORY_ADDED = 8;
+	private static final byte COFFEE_PURCHASED = 9;
+
+	private final FileChannel channel;
+	private final long commitIntervalNanos;
+	private final int commitBatch;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition commitNeeded = lock.newCondition();
+	/** Region being appended to */
+	private MappedByteBuffer region;
+	/** File offset of region */
+	private long regionStart;
+	/** Offset of the next record within region */
+	private int position;
+	/** Records appended since the last commit */
+	private int uncommitted;
+	/** Full regions whose records have not been committed */
+	private List<MappedByteBuffer> filledRegions = new ArrayList<MappedByteBuffer>();
+	private boolean closed;
+	/** Inventory levels after the last record, by Ingredient id, once replayed */
+	private long[] levels = new long[Ingredient.STANDARD];
+	private boolean replayed;
+
+	private final Thread committer;
+
+	/**
+	 * Opens the journal in the given file, creating it if needed,
+	 * and starts the commit thread.  New records are appended
+	 * after the ones already in the file.
+	 * @param file
+	 * @param commitInterval
+	 * @param unit
+	 * @param commitBatch
+	 * @throws IOException
+	 */
+	public Journal(Path file, long commitInterval, TimeUnit unit, int commitBatch) throws IOException {
+		if (commitBatch < 1) {
+			throw new IllegalArgumentException("A commit needs at least one record");
+		}
+		this.commitIntervalNanos = unit.toNanos(commitInterval);
+		this.commitBatch = commitBatch;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long end = scan(null, 0);
+		regionStart = end - end % REGION_SIZE;
+		position = (int) (end - regionStart);
+		region = map(regionStart);
+		if (clear(region, position)) {
+			region.force();
+		}
+		committer = new Thread(this::commitLoop, "coffee-maker-journal");
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	/**
+	 * Applies every record in the journal to the given recipe book
+	 * and inventory, which should be in the state the coffee maker
+	 * was in when the journal was started (normally new).  A
+	 * journal must be replayed, even if it is empty, before it can
+	 * be used for snapshots.
+	 * @param book
+	 * @param inventory
+	 * @throws IOException if a record cannot be applied
+	 */
+	public void replay(RecipeBook book, Inventory inventory) throws IOException {
+		replay(null, book, inventory);
+	}
+
+	/**
+	 * Restores the snapshot into an empty recipe book and the
+	 * inventory, then applies the records written after it.  With
+	 * a null snapshot the whole journal is replayed.
+	 * @param snapshot
+	 * @param book
+	 * @param inventory
+	 * @throws IOException if a record cannot be applied
+	 */
+	public void replay(Snapshot snapshot, RecipeBook book, Inventory inventory) throws IOException {
+		long[] added = new long[inventory.getIngredientCount()];
+		lock.lock();
+		try {
+			long start = 0;
+			int[] base = inventory.getStock();
+			if (snapshot != null) {
+				start = snapshot.getJournalPosition();
+				if (start > regionStart + position) {
+					throw new IOException("The snapshot is newer than the journal");
+				}
+				// The levels may only be whole once the later records are added
+				snapshot.load(book);
+				base = snapshot.levels();
+			}
+			scan(body -> apply(body, book, added), start);
+			// Purchases and restocks run concurrently, so only their totals are meaningful
+			int n = inventory.getIngredientCount();
+			// The snapshot's levels must fit the inventory as well
+			add(base, 1, new long[n]);
+			int[] restored = new int[n];
+			for (int i = 0; i < n; i++) {
+				restored[i] = restored(i < base.length ? base[i] : 0, added[i], 
+						inventory.getIngredientName(i).toLowerCase());
+			}
+			levels = new long[n];
+			for (int i = 0; i < n; i++) {
+				inventory.setStock(i, restored[i]);
+				levels[i] = restored[i];
+			}
+			replayed = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the given menu and of the inventory
+	 * levels after the last record.  The caller must make sure no
+	 * recipe change is between the book and the journal.
+	 * @param menu
+	 * @return Snapshot
+	 */
+	Snapshot snapshot(RecipeMenu menu) {
+		lock.lock();
+		try {
+			if (!replayed) {
+				throw new IllegalStateException("The journal must be replayed before taking a snapshot");
+			}
+			int[] units = new int[levels.length];
+			for (int i = 0; i < units.length; i++) {
+				units[i] = (int) levels[i];
+			}
+			return new Snapshot(regionStart + position, units, menu.recipes(), menu.getRecipeCount());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void recipeAdded(int slot, Recipe r) {
+		byte[] name = r.getName().getBytes(StandardCharsets.UTF_8);
+		lock.lock();
+		try {
+			ByteBuffer out = begin(1 + 4 * 4 + 4 * r.getIngredientCount() + name.length);
+			out.put(RECIPE_ADDED).putInt(slot);
+			putRecipe(out, r);
+			out.putInt(name.length).put(name);
+			end();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void recipeDeleted(int slot) {
+		lock.lock();
+		try {
+			begin(1 + 4).put(RECIPE_DELETED).putInt(slot);
+			end();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void recipeEdited(int slot, Recipe r) {
+		lock.lock();
+		try {
+			ByteBuffer out = begin(1 + 4 * 3 + 4 * r.getIngredientCount());
+			out.put(RECIPE_EDITED).putInt(slot);
+			putRecipe(out, r);
+			end();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void inventoryAdded(int[] amounts) {
+		lock.lock();
+		try {
+			putAmounts(begin(1 + 4 + 4 * amounts.length).put(INVENTORY_ADDED), amounts);
+			end();
+			count(amounts, 1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+		lock.lock();
+		try {
+			putAmounts(begin(1 + 4 * 3 + 4 * amounts.length).put(COFFEE_PURCHASED).putInt(slot).putInt(price), amounts);
+			end();
+			count(amounts, -1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds sign times the units of each ingredient to the levels.
+	 * Callers must hold the lock.
+	 */
+	private void count(int[] amounts, int sign) {
+		if (amounts.length > levels.length) {
+			levels = Arrays.copyOf(levels, amounts.length);
+		}
+		for (int i = 0; i < amounts.length; i++) {
+			levels[i] += sign * (long) amounts[i];
+		}
+	}
+
+	/**
+	 * Forces every record appended so far to disk.
+	 */
+	public void commit() {
+		List<MappedByteBuffer> filled;
+		MappedByteBuffer current;
+		lock.lock();
+		try {
+			if (uncommitted == 0) {
+				return;
+			}
+			filled = filledRegions;
+			current = region;
+			filledRegions = new ArrayList<MappedByteBuffer>();
+			uncommitted = 0;
+		} finally {
+			lock.unlock();
+		}
+		// Appends carry on into the mapping while it is forced
+		for (MappedByteBuffer buf : filled) {
+			buf.force();
+		}
+		current.force();
+	}
+
+	/**
+	 * Commits the remaining records, stops the commit thread and
+	 * closes the file.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			commitNeeded.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		commit();
+		channel.close();
+	}
+
+	/**
+	 * Commit thread: waits for a full batch, a full region or the
+	 * end of the interval, whichever comes first, then commits.
+	 */
+	private void commitLoop() {
+		while (true) {
+			lock.lock();
+			try {
+				long remaining = commitIntervalNanos;
+				while (!closed && uncommitted < commitBatch && filledRegions.isEmpty() && remaining > 0) {
+					remaining = commitNeeded.awaitNanos(remaining);
+				}
+				if (closed) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+			commit();
+		}
+	}
+
+	/**
+	 * Starts a record of the given size and returns the buffer to
+	 * write its type and fields into.  Callers must hold the lock.
+	 */
+	private ByteBuffer begin(int size) {
+		if (closed) {
+			throw new IllegalStateException("The journal is closed");
+		}
+		if (size > REGION_SIZE - 4) {
+			throw new IllegalArgumentException("A journal record cannot exceed " + (REGION_SIZE - 4) + " bytes");
+		}
+		if (position + 4 + size > REGION_SIZE) {
+			if (position + 4 <= REGION_SIZE) {
+				region.putInt(position, SKIP);
+			}
+			// The commit thread forces the full region, off the append path
+			filledRegions.add(region);
+			commitNeeded.signal();
+			regionStart += REGION_SIZE;
+			position = 0;
+			try {
+				region = map(regionStart);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		region.position(position + 4);
+		return region;
+	}
+
+	/**
+	 * Finishes the record started by begin by writing its length.
+	 */
+	private void end() {
+		int next = region.position();
+		region.putInt(position, next - position - 4);
+		position = next;
+		if (++uncommitted == commitBatch) {
+			commitNeeded.signal();
+		}
+	}
+
+	private static void putRecipe(ByteBuffer out, Recipe r) {
+		out.putInt(r.getPrice());
+		putAmounts(out, r.amounts());
+	}
+
+	private static void putAmounts(ByteBuffer out, int[] amounts) {
+		out.putInt(amounts.length);
+		for (int units : amounts) {
+			out.putInt(units);
+		}
+	}
+
+	/**
+	 * Reads a recipe's price and amounts, which are four standard
+	 * amounts in an old record and counted in a new one.
+	 */
+	private static Recipe getRecipe(ByteBuffer in, boolean counted) throws IOException {
+		Recipe r = new Recipe();
+		try {
+			r.setPrice(in.getInt());
+			int[] amounts = getAmounts(in, counted);
+			for (int i = 0; i < amounts.length; i++) {
+				if (amounts[i] != 0 || i < Ingredient.STANDARD) {
+					r.setAmount(i, amounts[i]);
+				}
+			}
+		} catch (RecipeException e) {
+			throw new IOException("The journal holds an invalid recipe", e);
+		}
+		return r;
+	}
+
+	private static int[] getAmounts(ByteBuffer in, boolean counted) throws IOException {
+		int count = counted ? in.getInt() : Ingredient.STANDARD;
+		if (count < 0 || count > in.remaining() / 4) {
+			throw new IOException("The journal holds a record with " + count + " amounts");
+		}
+		int[] amounts = new int[count];
+		in.asIntBuffer().get(amounts);
+		in.position(in.position() + 4 * count);
+		return amounts;
+	}
+
+	/**
+	 * Applies one record.  Inventory changes are summed into added,
+	 * by Ingredient id, rather than applied one by one.
+	 */
+	private static void apply(ByteBuffer body, RecipeBook book, long[] added) throws IOException {
+		byte type = body.get();
+		boolean counted = type > COFFEE_PURCHASED_STANDARD;
+		switch (type) {
+		case RECIPE_ADDED_STANDARD:
+		case RECIPE_ADDED: {
+			int slot = body.getInt();
+			Recipe r = getRecipe(body, counted);
+			byte[] name = new byte[body.getInt()];
+			body.get(name);
+			r.setName(new String(name, StandardCharsets.UTF_8));
+			if (!book.addRecipe(r) || book.indexOf(r.getName()) != slot) {
+				throw new IOException("Recipe " + r.getName() + " cannot be restored to slot " + slot);
+			}
+			break;
+		}
+		case RECIPE_DELETED: {
+			int slot = body.getInt();
+			if (book.deleteRecipe(slot) == null) {
+				throw new IOException("There is no recipe to delete in slot " + slot);
+			}
+			break;
+		}
+		case RECIPE_EDITED_STANDARD:
+		case RECIPE_EDITED: {
+			int slot = body.getInt();
+			if (book.editRecipe(slot, getRecipe(body, counted)) == null) {
+				throw new IOException("There is no recipe to edit in slot " + slot);
+			}
+			break;
+		}
+		case INVENTORY_ADDED_STANDARD:
+		case INVENTORY_ADDED:
+			add(getAmounts(body, counted), 1, added);
+			break;
+		case COFFEE_PURCHASED_STANDARD:
+		case COFFEE_PURCHASED:
+			body.getInt();
+			body.getInt();
+			add(getAmounts(body, counted), -1, added);
+			break;
+		default:
+			throw new IOException("Unknown journal record type " + type);
+		}
+	}
+
+	/**
+	 * Adds sign times the amounts to added, which has a total for
+	 * every ingredient the inventory being replayed into stocks.
+	 */
+	private static void add(int[] amounts, int sign, long[] added) throws IOException {
+		for (int i = 0; i < amounts.length; i++) {
+			if (i < added.length) {
+				added[i] += sign * (long) amounts[i];
+			} else if (amounts[i] != 0) {
+				throw new IOException("The journal holds units of ingredient " + i 
+						+ ", which the inventory does not stock");
+			}
+		}
+	}
+
+	private static int restored(int units, long added, String ingredient) throws IOException {
+		long total = units + added;
+		if (total < 0 || total > Integer.MAX_VALUE) {
+			throw new IOException("The journal leaves " + total + " units of " + ingredient);
+		}
+		return (int) total;
+	}
+
+	/**
+	 * Receives the body of each record during a scan.
+	 */
+	private interface RecordHandler {
+		void record(ByteBuffer body) throws IOException;
+	}
+
+	/**
+	 * Walks the records from the given record offset, passing each
+	 * body to the handler if there is one, and returns the file
+	 * offset just after the last complete record.
+	 */
+	private long scan(RecordHandler handler, long from) throws IOException {
+		long start = from - from % REGION_SIZE;
+		MappedByteBuffer buf = map(start);
+		int pos = (int) (from - start);
+		while (true) {
+			int length = pos + 4 <= REGION_SIZE ? buf.getInt(pos) : SKIP;
+			if (length == SKIP) {
+				start += REGION_SIZE;
+				buf = map(start);
+				pos = 0;
+			} else if (length <= 0 || length > REGION_SIZE - pos - 4) {
+				return start + pos;
+			} else {
+				if (handler != null) {
+					ByteBuffer body = buf.duplicate();
+					body.limit(pos + 4 + length).position(pos + 4);
+					handler.record(body.slice());
+				}
+				pos += 4 + length;
+			}
+		}
+	}
+
+	/**
+	 * Zeroes the region from the given offset on, where a record
+	 * cut short by a crash may have left its fields, so that the
+	 * records appended there cannot run into them.  Returns true
+	 * if anything had to be cleared.
+	 */
+	private static boolean clear(MappedByteBuffer buf, int from) {
+		boolean cleared = false;
+		for (int i = from; i < REGION_SIZE; i++) {
+			if (buf.get(i) != 0) {
+				buf.put(i, (byte) 0);
+				cleared = true;
+			}
+		}
+		return cleared;
+	}
+
+	/**
+	 * Returns the file offset just after the last record.
+	 * @return long
+	 */
+	long getEnd() {
+		lock.lock();
+		try {
+			return regionStart + position;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Maps the region at the given offset, growing the file if
+	 * needed.
+	 */
+	private MappedByteBuffer map(long start) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
+
+/**
+ * Inventory for the coffee maker that packs coffee, milk, sugar
+ * and chocolate into one atomically updated word.  A purchase
+ * checks and deducts all four ingredients with a single
+ * compare-and-swap, so no monitor is held.
+ *
+ * Each ingredient takes 16 bits of the word, so an ingredient can
+ * hold at most MAX_UNITS units, and only the standard four
+ * ingredients can be stocked.
+ */
+public class LockFreeInventory extends Inventory {
+
+	/** Largest number of units of one ingredient */
+	public static final int MAX_UNITS = 0xFFFF;
+
+	/** Bits per ingredient; ingredient id i is at bit i * BITS */
+	private static final int BITS = 16;
+	private static final int COFFEE_SHIFT = Ingredient.COFFEE * BITS;
+	private static final int MILK_SHIFT = Ingredient.MILK * BITS;
+	private static final int SUGAR_SHIFT = Ingredient.SUGAR * BITS;
+	private static final int CHOCOLATE_SHIFT = Ingredient.CHOCOLATE * BITS;
+
+	/** Packed units of all four ingredients */
+	private final AtomicLong units;
+
+	/**
+	 * Creates a lock-free inventory and fills each item
+	 * with 15 units.
+	 */
+	public LockFreeInventory() {
+		units = new AtomicLong(pack(15, 15, 15, 15));
+	}
+
+	/**
+	 * Returns the current number of chocolate units in
+	 * the inventory.
+	 * @return int
+	 */
+	public int getChocolate() {
+		return unpack(units.get(), CHOCOLATE_SHIFT);
+	}
+
+	/**
+	 * Sets the number of chocolate units in the inventory
+	 * to the specified amount.
+	 * @param chocolate
+	 */
+	public void setChocolate(int chocolate) {
+		set(CHOCOLATE_SHIFT, chocolate);
+	}
+
+	/**
+	 * Add the number of chocolate units in the inventory
+	 * to the current amount of chocolate units.
+	 * @param chocolate
+	 * @throws InventoryException
+	 */
+	public void addChocolate(int chocolate) throws InventoryException {
+		add(CHOCOLATE_SHIFT, chocolate, "chocolate");
+	}
+
+	/**
+	 * Returns the current number of coffee units in
+	 * the inventory.
+	 * @return int
+	 */
+	public int getCoffee() {
+		return unpack(units.get(), COFFEE_SHIFT);
+	}
+
+	/**
+	 * Sets the number of coffee units in the inventory
+	 * to the specified amount.
+	 * @param coffee
+	 */
+	public void setCoffee(int coffee) {
+		set(COFFEE_SHIFT, coffee);
+	}
+
+	/**
+	 * Add the number of coffee units in the inventory
+	 * to the current amount of coffee units.
+	 * @param coffee
+	 * @throws InventoryException
+	 */
+	public void addCoffee(int coffee) throws InventoryException {
+		add(COFFEE_SHIFT, coffee, "coffee");
+	}
+
+	/**
+	 * Returns the current number of milk units in
+	 * the inventory.
+	 * @return int
+	 */
+	public int getMilk() {
+		return unpack(units.get(), MILK_SHIFT);
+	}
+
+	/**
+	 * Sets the number of milk units in the inventory
+	 * to the specified amount.
+	 * @param milk
+	 */
+	public void setMilk(int milk) {
+		set(MILK_SHIFT, milk);
+	}
+
+	/**
+	 * Add the number of milk units in the inventory
+	 * to the current amount of milk units.
+	 * @param milk
+	 * @throws InventoryException
+	 */
+	public void addMilk(int milk) throws InventoryException {
+		add(MILK_SHIFT, milk, "milk");
+	}
+
+	/**
+	 * Returns the current number of sugar units in
+	 * the inventory.
+	 * @return int
+	 */
+	public int getSugar() {
+		return unpack(units.get(), SUGAR_SHIFT);
+	}
+
+	/**
+	 * Sets the number of sugar units in the inventory
+	 * to the specified amount.
+	 * @param sugar
+	 */
+	public void setSugar(int sugar) {
+		set(SUGAR_SHIFT, sugar);
+	}
+
+	/**
+	 * Add the number of sugar units in the inventory
+	 * to the current amount of sugar units.
+	 * @param sugar
+	 * @throws InventoryException
+	 */
+	public void addSugar(int sugar) throws InventoryException {
+		add(SUGAR_SHIFT, sugar, "sugar");
+	}
+
+	/**
+	 * Adds units of all four ingredients in one compare-and-swap.
+	 * Every amount is checked before any stock changes.
+	 * @param amtCoffee
+	 * @param amtMilk
+	 * @param amtSugar
+	 * @param amtChocolate
+	 * @throws InventoryException
+	 */
+	public void addInventory(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate)
+			throws InventoryException {
+		long current;
+		do {
+			current = units.get();
+			checkUnits(current, COFFEE_SHIFT, amtCoffee, "coffee");
+			checkUnits(current, MILK_SHIFT, amtMilk, "milk");
+			checkUnits(current, SUGAR_SHIFT, amtSugar, "sugar");
+			checkUnits(current, CHOCOLATE_SHIFT, amtChocolate, "chocolate");
+		} while (!units.compareAndSet(current, current + pack(amtCoffee, amtMilk, amtSugar, amtChocolate)));
+	}
+
+	/**
+	 * Returns the current units of the ingredient with the
+	 * given id.
+	 * @param ingredient
+	 * @return int
+	 */
+	public int getStock(int ingredient) {
+		return unpack(units.get(), shift(ingredient));
+	}
+
+	/**
+	 * Returns the current units of every ingredient, by id, read
+	 * from a single snapshot.
+	 * @return int []
+	 */
+	public int[] getStock() {
+		long current = units.get();
+		int[] stock = new int[Ingredient.STANDARD];
+		for (int i = 0; i < stock.length; i++) {
+			stock[i] = unpack(current, i * BITS);
+		}
+		return stock;
+	}
+
+	/**
+	 * Sets the units of the ingredient with the given id.
+	 * @param ingredient
+	 * @param units
+	 */
+	public void setStock(int ingredient, int units) {
+		set(shift(ingredient), units);
+	}
+
+	/**
+	 * Adds units of the ingredient with the given id.
+	 * @param ingredient
+	 * @param units
+	 * @throws InventoryException
+	 */
+	public void addStock(int ingredient, int units) throws InventoryException {
+		add(shift(ingredient), units, getIngredientName(ingredient).toLowerCase());
+	}
+
+	/**
+	 * Adds units of each ingredient, by id, in one compare-and-swap.
+	 * @param amounts
+	 * @throws InventoryException
+	 */
+	public void addInventory(int[] amounts) throws InventoryException {
+		checkIngredients(amounts, Ingredient.STANDARD);
+		addInventory(amount(amounts, Ingredient.COFFEE), amount(amounts, Ingredient.MILK),
+				amount(amounts, Ingredient.SUGAR), amount(amounts, Ingredient.CHOCOLATE));
+	}
+
+	/**
+	 * Returns true if there are enough ingredients to make
+	 * the beverage.
+	 * @param r
+	 * @return boolean
+	 */
+	protected boolean enoughIngredients(Recipe r) {
+		int[] amounts = r.amounts();
+		return packable(amounts) && covers(units.get(), pack(amounts));
+	}
+
+	/**
+	 * Removes the given units of each ingredient, by id, in one
+	 * compare-and-swap.  Fails for any amount of an ingredient
+	 * past the standard four.
+	 * @param amounts
+	 * @return boolean
+	 */
+	public boolean useIngredients(int[] amounts) {
+		if (!packable(amounts)) {
+			return false;
+		}
+		long deduction = pack(amounts);
+		long current;
+		do {
+			current = units.get();
+			if (!covers(current, deduction)) {
+				return false;
+			}
+		} while (!units.compareAndSet(current, current - deduction));
+		return true;
+	}
+
+	/**
+	 * Removes the given units of each ingredient if there are
+	 * enough of all four, otherwise leaves the inventory unchanged.
+	 * The check and the deduction happen in one compare-and-swap,
+	 * retried until no other thread has changed the inventory
+	 * in between.
+	 * @param amtCoffee
+	 * @param amtMilk
+	 * @param amtSugar
+	 * @param amtChocolate
+	 * @return boolean
+	 */
+	public boolean useIngredients(int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) {
+		if (amtCoffee < 0 || amtMilk < 0 || amtSugar < 0 || amtChocolate < 0) {
+			return false;
+		}
+		long current;
+		do {
+			current = units.get();
+			if (!fits(current, amtCoffee, amtMilk, amtSugar, amtChocolate)) {
+				return false;
+			}
+			// Every field is at least its amount, so no borrow crosses fields.
+		} while (!units.compareAndSet(current, current - pack(amtCoffee, amtMilk, amtSugar, amtChocolate)));
+		return true;
+	}
+
+	/**
+	 * Removes the ingredients for a batch of orders, in order.
+	 * The whole batch is applied to a private copy of the stock
+	 * and published with one compare-and-swap, which is retried
+	 * from the start if another thread got in first.
+	 * made[i] is set to true if orders[i] was made; null orders
+	 * are skipped.
+	 * @param orders
+	 * @param made
+	 */
+	public void useIngredients(Recipe[] orders, boolean[] made) {
+		int n = orders.length;
+		long[] deductions = new long[n];
+		boolean[] valid = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			Recipe r = orders[i];
+			valid[i] = r != null && packable(r.amounts());
+			if (valid[i]) {
+				deductions[i] = pack(r.amounts());
+			}
+		}
+		long current;
+		long next;
+		do {
+			current = units.get();
+			next = current;
+			for (int i = 0; i < n; i++) {
+				made[i] = valid[i] && covers(next, deductions[i]);
+				if (made[i]) {
+					next -= deductions[i];
+				}
+			}
+		} while (next != current && !units.compareAndSet(current, next));
+	}
+
+	/**
+	 * Returns the packed stock itself, which changes exactly when
+	 * the stock does.  Two equal stamps always mean equal stock.
+	 * @return long
+	 */
+	public long getVersion() {
+		return units.get();
+	}
+
+	/**
+	 * Returns a string describing the current contents
+	 * of the inventory, read from a single snapshot.
+	 * @return String
+	 */
+	public String toString() {
+		long current = units.get();
+		return describe(unpack(current, COFFEE_SHIFT), unpack(current, MILK_SHIFT),
+				unpack(current, SUGAR_SHIFT), unpack(current, CHOCOLATE_SHIFT));
+	}
+
+	/**
+	 * Returns the bit position of the ingredient with the given id.
+	 */
+	private static int shift(int ingredient) {
+		if (ingredient < 0 || ingredient >= Ingredient.STANDARD) {
+			throw new IndexOutOfBoundsException("A lock-free inventory has no ingredient " + ingredient);
+		}
+		return ingredient * BITS;
+	}
+
+	private static int amount(int[] amounts, int ingredient) {
+		return ingredient < amounts.length ? amounts[ingredient] : 0;
+	}
+
+	/**
+	 * Returns true if amounts by ingredient id fit in a packed
+	 * word: none negative or larger than MAX_UNITS, and none for an
+	 * ingredient past the standard four.
+	 */
+	private static boolean packable(int[] amounts) {
+		for (int i = 0; i < amounts.length; i++) {
+			if (amounts[i] < 0 || amounts[i] > (i < Ingredient.STANDARD ? MAX_UNITS : 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Packs amounts by ingredient id that are packable.
+	 */
+	private static long pack(int[] amounts) {
+		long packed = 0;
+		for (int i = 0; i < Math.min(amounts.length, Ingredient.STANDARD); i++) {
+			packed |= (long) amounts[i] << (i * BITS);
+		}
+		return packed;
+	}
+
+	/**
+	 * Replaces one ingredient, ignoring amounts that are negative
+	 * or larger than MAX_UNITS.
+	 */
+	private void set(int shift, int amount) {
+		if (amount < 0 || amount > MAX_UNITS) {
+			return;
+		}
+		long current;
+		do {
+			current = units.get();
+		} while (!units.compareAndSet(current,
+				(current & ~((long) MAX_UNITS << shift)) | ((long) amount << shift)));
+	}
+
+	/**
+	 * Adds to one ingredient, refusing to go past MAX_UNITS.
+	 */
+	private void add(int shift, int amount, String ingredient) throws InventoryException {
+		long current;
+		do {
+			current = units.get();
+			checkUnits(current, shift, amount, ingredient);
+		} while (!units.compareAndSet(current, current + ((long) amount << shift)));
+	}
+
+	/**
+	 * Checks that amount can be added to one ingredient of units.
+	 */
+	private static void checkUnits(long units, int shift, int amount, String ingredient) 
+			throws InventoryException {
+		if (amount < 0) {
+			throw invalidUnits(ingredient);
+		}
+		if (amount > MAX_UNITS - unpack(units, shift)) {
+			throw new InventoryException("Units of " + ingredient + " cannot exceed " + MAX_UNITS);
+		}
+	}
+
+	/**
+	 * Returns true if every field of units is at least the
+	 * matching field of the packed deduction.
+	 */
+	private static boolean covers(long units, long deduction) {
+		return unpack(units, COFFEE_SHIFT) >= unpack(deduction, COFFEE_SHIFT)
+				&& unpack(units, MILK_SHIFT) >= unpack(deduction, MILK_SHIFT)
+				&& unpack(units, SUGAR_SHIFT) >= unpack(deduction, SUGAR_SHIFT)
+				&& unpack(units, CHOCOLATE_SHIFT) >= unpack(deduction, CHOCOLATE_SHIFT);
+	}
+
+	private static boolean fits(long units, int amtCoffee, int amtMilk, int amtSugar, int amtChocolate) {
+		return unpack(units, COFFEE_SHIFT) >= amtCoffee
+				&& unpack(units, MILK_SHIFT) >= amtMilk
+				&& unpack(units, SUGAR_SHIFT) >= amtSugar
+				&& unpack(units, CHOCOLATE_SHIFT) >= amtChocolate;
+	}
+
+	private static int unpack(long units, int shift) {
+		return (int) ((units >>> shift) & MAX_UNITS);
+	}
+
+	private static long pack(int coffee, int milk, int sugar, int chocolate) {
+		return ((long) coffee << COFFEE_SHIFT) | ((long) milk << MILK_SHIFT)
+				| ((long) sugar << SUGAR_SHIFT) | ((long) chocolate << CHOCOLATE_SHIFT);
+	}
+}
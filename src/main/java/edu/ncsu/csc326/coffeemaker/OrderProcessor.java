@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queues purchases for one coffee maker in a bounded ring buffer
+ * and applies them in order on a single consumer thread, so that
+ * callers do not block on the machine while a beverage is made.
+ *
+ * The buffer's slots are allocated once, up front; each order
+ * only allocates the future that will carry its change.
+ */
+public class OrderProcessor implements AutoCloseable {
+
+	/**
+	 * What submit does when the buffer is full.
+	 */
+	public enum FullPolicy {
+		/** Fail the order's future straight away */
+		REJECT,
+		/** Wait until the consumer frees a slot */
+		BLOCK
+	}
+
+	private final CoffeeMaker coffeeMaker;
+	private final FullPolicy policy;
+
+	/** Ring buffer slots; an order at sequence s lives at s % capacity */
+	private final int[] recipeIndexes;
+	private final int[] amountsPaid;
+	private final CompletableFuture<Integer>[] futures;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	/** Sequence of the next order to make */
+	private long head;
+	/** Sequence of the next free slot */
+	private long tail;
+	private boolean closed;
+
+	private final Thread consumer;
+
+	/**
+	 * Creates an order processor for the coffee maker and starts
+	 * its consumer thread.
+	 * @param coffeeMaker
+	 * @param capacity
+	 * @param policy
+	 */
+	@SuppressWarnings("unchecked")
+	public OrderProcessor(CoffeeMaker coffeeMaker, int capacity, FullPolicy policy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The order buffer needs at least one slot");
+		}
+		this.coffeeMaker = coffeeMaker;
+		this.policy = policy;
+		recipeIndexes = new int[capacity];
+		amountsPaid = new int[capacity];
+		futures = (CompletableFuture<Integer>[]) new CompletableFuture<?>[capacity];
+		consumer = new Thread(this::consume, "coffee-maker-orders");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Queues a purchase and returns a future for its change, which
+	 * follows the same rules as CoffeeMaker.makeCoffee.  The future
+	 * fails with a RejectedExecutionException if the processor is
+	 * closed, or if the buffer is full under the REJECT policy.
+	 * @param recipeToPurchase
+	 * @param amtPaid
+	 * @return CompletableFuture
+	 */
+	public CompletableFuture<Integer> submit(int recipeToPurchase, int amtPaid) {
+		CompletableFuture<Integer> change = new CompletableFuture<Integer>();
+		lock.lock();
+		try {
+			while (!closed && tail - head == futures.length) {
+				if (policy == FullPolicy.REJECT) {
+					change.completeExceptionally(new RejectedExecutionException("The order buffer is full"));
+					return change;
+				}
+				notFull.awaitUninterruptibly();
+			}
+			if (closed) {
+				change.completeExceptionally(new RejectedExecutionException("The order processor is closed"));
+				return change;
+			}
+			int slot = (int) (tail % futures.length);
+			recipeIndexes[slot] = recipeToPurchase;
+			amountsPaid[slot] = amtPaid;
+			futures[slot] = change;
+			tail++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		return change;
+	}
+
+	/**
+	 * Returns the number of orders waiting to be made.
+	 * @return int
+	 */
+	public int getPendingOrders() {
+		lock.lock();
+		try {
+			return (int) (tail - head);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting orders, waits for the queued ones to be
+	 * made and stops the consumer thread.  An interrupt does not
+	 * cut the wait short; it is kept for the caller to see.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		boolean interrupted = false;
+		while (consumer.isAlive()) {
+			try {
+				consumer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Consumer loop: takes orders one at a time, in the order they
+	 * were submitted, and makes each one outside the lock.  If the
+	 * loop dies, the orders still queued fail rather than hang.
+	 */
+	private void consume() {
+		try {
+			takeOrders();
+		} finally {
+			abandon();
+		}
+	}
+
+	private void takeOrders() {
+		while (true) {
+			int recipeToPurchase;
+			int amtPaid;
+			CompletableFuture<Integer> change;
+			lock.lock();
+			try {
+				while (head == tail && !closed) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if (head == tail) {
+					return;
+				}
+				int slot = (int) (head % futures.length);
+				recipeToPurchase = recipeIndexes[slot];
+				amtPaid = amountsPaid[slot];
+				change = futures[slot];
+				futures[slot] = null;
+				head++;
+				notFull.signal();
+			} finally {
+				lock.unlock();
+			}
+			try {
+				change.complete(coffeeMaker.makeCoffee(recipeToPurchase, amtPaid));
+			} catch (RuntimeException e) {
+				change.completeExceptionally(e);
+			} catch (Error e) {
+				change.completeExceptionally(e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Closes the processor and fails every order still queued.
+	 */
+	private void abandon() {
+		lock.lock();
+		try {
+			closed = true;
+			while (head != tail) {
+				int slot = (int) (head % futures.length);
+				futures[slot].completeExceptionally(new RejectedExecutionException("The order processor stopped"));
+				futures[slot] = null;
+				head++;
+			}
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the orders a coffee maker handles by outcome and by
+ * recipe slot and keeps a histogram of how long they took.  Add it
+ * with CoffeeMaker.addListener.
+ *
+ * Recording allocates nothing and takes no lock, and every getter
+ * reads the live counters, so the metrics can be read at any time
+ * without holding up purchases.  Latencies are kept in buckets
+ * that are 1/16 of a power of two wide, so a percentile is within
+ * about 6% of the true value.
+ */
+public class PurchaseMetrics implements CoffeeMakerListener {
+
+	/** Bits of each latency kept below its highest set bit */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Enough buckets for any non-negative long */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+	private final LongAdder[] outcomes;
+	private final AtomicLongArray slotOrders;
+
+	/**
+	 * Creates metrics that count orders for recipe slots 0 to
+	 * slots - 1.  Orders for other slots are only counted by
+	 * outcome.
+	 * @param slots
+	 */
+	public PurchaseMetrics(int slots) {
+		outcomes = new LongAdder[PurchaseOutcome.values().length];
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = new LongAdder();
+		}
+		slotOrders = new AtomicLongArray(slots);
+	}
+
+	@Override
+	public void orderCompleted(int slot, PurchaseOutcome outcome, long elapsedNanos) {
+		outcomes[outcome.ordinal()].increment();
+		if (slot >= 0 && slot < slotOrders.length()) {
+			slotOrders.incrementAndGet(slot);
+		}
+		latencies.incrementAndGet(bucket(elapsedNanos));
+	}
+
+	/**
+	 * Returns the number of orders with the given outcome.
+	 * @param outcome
+	 * @return long
+	 */
+	public long getOrders(PurchaseOutcome outcome) {
+		return outcomes[outcome.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the number of orders of any outcome.
+	 * @return long
+	 */
+	public long getOrders() {
+		long orders = 0;
+		for (LongAdder count : outcomes) {
+			orders += count.sum();
+		}
+		return orders;
+	}
+
+	/**
+	 * Returns the number of orders, of any outcome, for the
+	 * recipe slot, or 0 if the slot is not counted.
+	 * @param slot
+	 * @return long
+	 */
+	public long getSlotOrders(int slot) {
+		return slot >= 0 && slot < slotOrders.length() ? slotOrders.get(slot) : 0;
+	}
+
+	/**
+	 * Returns the order latency, in nanoseconds, at each of the
+	 * given percentiles (e.g. 50, 99 and 99.9), all read from one
+	 * copy of the histogram.  Each value is the upper end of the
+	 * bucket the percentile falls in; all are 0 if there have been
+	 * no orders.
+	 * @param percentiles
+	 * @return long []
+	 */
+	public long[] getLatencyNanos(double... percentiles) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = latencies.get(i);
+			total += counts[i];
+		}
+		long[] values = new long[percentiles.length];
+		if (total == 0) {
+			return values;
+		}
+		for (int p = 0; p < percentiles.length; p++) {
+			long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					values[p] = highestValue(i);
+					break;
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the histogram bucket of a latency.
+	 */
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return nanos < 0 ? 0 : (int) nanos;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Returns the largest latency that falls in the bucket.
+	 */
+	static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		// For the last bucket this wraps round to Long.MAX_VALUE
+		return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+	}
+}
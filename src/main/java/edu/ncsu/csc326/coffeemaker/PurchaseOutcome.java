@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * Why a beverage purchase did or did not go through.
+ */
+public enum PurchaseOutcome {
+	/** The beverage was made and change was given */
+	PURCHASED,
+	/** There is no recipe at the selected index */
+	INVALID_RECIPE,
+	/** The amount paid is less than the recipe's price */
+	INSUFFICIENT_FUNDS,
+	/** The inventory lacks an ingredient the recipe needs */
+	INSUFFICIENT_INVENTORY
+}
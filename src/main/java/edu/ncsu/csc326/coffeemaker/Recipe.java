@@ -13,18 +13,30 @@
  */
 package edu.ncsu.csc326.coffeemaker;
 
+import java.util.Arrays;
+
 import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
 
 /**
  * @author   Sarah Heckman
  */
 public class Recipe {
+    /** Thrown, without a stack trace, for malformed or negative input */
+    private static final RecipeException INVALID_PRICE = 
+    		new RecipeException("Price must be a positive integer", false);
+    private static final RecipeException INVALID_COFFEE = 
+    		new RecipeException("Units of coffee must be a positive integer", false);
+    private static final RecipeException INVALID_MILK = 
+    		new RecipeException("Units of milk must be a positive integer", false);
+    private static final RecipeException INVALID_SUGAR = 
+    		new RecipeException("Units of sugar must be a positive integer", false);
+    private static final RecipeException INVALID_CHOCOLATE = 
+    		new RecipeException("Units of chocolate must be a positive integer", false);
+    
     private String name;
     private int price;
-    private int amtCoffee;
-    private int amtMilk;
-    private int amtSugar;
-    private int amtChocolate;
+    /** Units of each ingredient, by Ingredient id */
+    private int[] amounts;
     
     /**
      * Creates a default recipe for the coffee maker.
@@ -32,100 +44,174 @@ public class Recipe {
     public Recipe() {
     	this.name = "";
     	this.price = 0;
-    	this.amtCoffee = 0;
-    	this.amtMilk = 0;
-    	this.amtSugar = 0;
-    	this.amtChocolate = 0;
+    	this.amounts = new int[Ingredient.STANDARD];
     }
     
     /**
 	 * @return   Returns the amtChocolate.
 	 */
     public int getAmtChocolate() {
-		return amtChocolate;
+		return amounts[Ingredient.CHOCOLATE];
 	}
     /**
 	 * @param amtChocolate   The amtChocolate to set.
 	 */
     public void setAmtChocolate(String chocolate) throws RecipeException {
-    	int amtChocolate = 0;
-    	try {
-    		amtChocolate = Integer.parseInt(chocolate);
-    	} catch (NumberFormatException e) {
-    		throw new RecipeException("Units of chocolate must be a positive integer");
-    	}
+    	setAmtChocolate(Units.parse(chocolate));
+	}
+    /**
+	 * Sets the units of chocolate without parsing.
+	 * @param amtChocolate
+	 * @throws RecipeException if amtChocolate is negative
+	 */
+    public void setAmtChocolate(int amtChocolate) throws RecipeException {
 		if (amtChocolate >= 0) {
-			this.amtChocolate = amtChocolate;
+			amounts[Ingredient.CHOCOLATE] = amtChocolate;
 		} else {
-			throw new RecipeException("Units of chocolate must be a positive integer");
+			throw INVALID_CHOCOLATE;
 		}
 	}
     /**
 	 * @return   Returns the amtCoffee.
 	 */
     public int getAmtCoffee() {
-		return amtCoffee;
+		return amounts[Ingredient.COFFEE];
 	}
     /**
 	 * @param amtCoffee   The amtCoffee to set.
 	 */
     public void setAmtCoffee(String coffee) throws RecipeException {
-    	int amtCoffee = 0;
-    	try {
-    		amtCoffee = Integer.parseInt(coffee);
-    	} catch (NumberFormatException e) {
-    		throw new RecipeException("Units of coffee must be a positive integer");
-    	}
+    	setAmtCoffee(Units.parse(coffee));
+	}
+    /**
+	 * Sets the units of coffee without parsing.
+	 * @param amtCoffee
+	 * @throws RecipeException if amtCoffee is negative
+	 */
+    public void setAmtCoffee(int amtCoffee) throws RecipeException {
 		if (amtCoffee >= 0) {
-			this.amtCoffee = amtCoffee;
+			amounts[Ingredient.COFFEE] = amtCoffee;
 		} else {
-			throw new RecipeException("Units of coffee must be a positive integer");
+			throw INVALID_COFFEE;
 		}
 	}
     /**
 	 * @return   Returns the amtMilk.
 	 */
     public int getAmtMilk() {
-		return amtMilk;
+		return amounts[Ingredient.MILK];
 	}
     /**
 	 * @param amtMilk   The amtMilk to set.
 	 */
     public void setAmtMilk(String milk) throws RecipeException{
-    	int amtMilk = 0;
-    	try {
-    		amtMilk = Integer.parseInt(milk);
-    	} catch (NumberFormatException e) {
-    		throw new RecipeException("Units of milk must be a positive integer");
-    	}
+    	setAmtMilk(Units.parse(milk));
+	}
+    /**
+	 * Sets the units of milk without parsing.
+	 * @param amtMilk
+	 * @throws RecipeException if amtMilk is negative
+	 */
+    public void setAmtMilk(int amtMilk) throws RecipeException {
 		if (amtMilk >= 0) {
-			this.amtMilk = amtMilk;
+			amounts[Ingredient.MILK] = amtMilk;
 		} else {
-			throw new RecipeException("Units of milk must be a positive integer");
+			throw INVALID_MILK;
 		}
 	}
     /**
 	 * @return   Returns the amtSugar.
 	 */
     public int getAmtSugar() {
-		return amtSugar;
+		return amounts[Ingredient.SUGAR];
 	}
     /**
 	 * @param amtSugar   The amtSugar to set.
 	 */
     public void setAmtSugar(String sugar) throws RecipeException {
-    	int amtSugar = 0;
-    	try {
-    		amtSugar = Integer.parseInt(sugar);
-    	} catch (NumberFormatException e) {
-    		throw new RecipeException("Units of sugar must be a positive integer");
-    	}
+    	setAmtSugar(Units.parse(sugar));
+	}
+    /**
+	 * Sets the units of sugar without parsing.
+	 * @param amtSugar
+	 * @throws RecipeException if amtSugar is negative
+	 */
+    public void setAmtSugar(int amtSugar) throws RecipeException {
 		if (amtSugar >= 0) {
-			this.amtSugar = amtSugar;
+			amounts[Ingredient.SUGAR] = amtSugar;
 		} else {
-			throw new RecipeException("Units of sugar must be a positive integer");
+			throw INVALID_SUGAR;
 		}
 	}
+    /**
+	 * Returns the units of the ingredient with the given id, 0 if
+	 * the recipe does not use it.
+	 * @param ingredient
+	 * @return int
+	 */
+    public int getAmount(int ingredient) {
+		return ingredient < amounts.length ? amounts[ingredient] : 0;
+	}
+    /**
+	 * Sets the units of the ingredient with the given id.
+	 * @param ingredient
+	 * @param units
+	 * @throws RecipeException if units is negative
+	 */
+    public void setAmount(int ingredient, int units) throws RecipeException {
+		checkAmount(ingredient, units);
+		if (ingredient >= amounts.length) {
+			amounts = Arrays.copyOf(amounts, ingredient + 1);
+		}
+		amounts[ingredient] = units;
+	}
+    /**
+	 * Checks a number of units of the ingredient with the given id.
+	 * @param ingredient
+	 * @param units
+	 * @throws RecipeException if units is negative
+	 */
+    static void checkAmount(int ingredient, int units) throws RecipeException {
+		if (units < 0) {
+			switch (ingredient) {
+			case Ingredient.COFFEE:
+				throw INVALID_COFFEE;
+			case Ingredient.MILK:
+				throw INVALID_MILK;
+			case Ingredient.SUGAR:
+				throw INVALID_SUGAR;
+			case Ingredient.CHOCOLATE:
+				throw INVALID_CHOCOLATE;
+			default:
+				throw new RecipeException("Units of ingredient " + ingredient + " must be a positive integer");
+			}
+		}
+	}
+    /**
+	 * Checks a price.
+	 * @param price
+	 * @throws RecipeException if price is negative
+	 */
+    static void checkPrice(int price) throws RecipeException {
+		if (price < 0) {
+			throw INVALID_PRICE;
+		}
+	}
+    /**
+	 * Returns the number of ingredient ids the recipe has amounts
+	 * for, at least Ingredient.STANDARD.
+	 * @return int
+	 */
+    public int getIngredientCount() {
+		return amounts.length;
+	}
+    /**
+	 * Returns the amounts by ingredient id; the array is the
+	 * recipe's own and must not be modified.
+	 */
+    int[] amounts() {
+		return amounts;
+	}
     /**
 	 * @return   Returns the name.
 	 */
@@ -150,16 +236,18 @@ public class Recipe {
 	 * @param price   The price to set.
 	 */
     public void setPrice(String price) throws RecipeException{
-    	int amtPrice = 0;
-    	try {
-    		amtPrice = Integer.parseInt(price);
-    	} catch (NumberFormatException e) {
-    		throw new RecipeException("Price must be a positive integer");
-    	}
-		if (amtPrice >= 0) {
-			this.price = amtPrice;
+    	setPrice(Units.parse(price));
+	}
+    /**
+	 * Sets the price without parsing.
+	 * @param price
+	 * @throws RecipeException if price is negative
+	 */
+    public void setPrice(int price) throws RecipeException {
+		if (price >= 0) {
+			this.price = price;
 		} else {
-			throw new RecipeException("Price must be a positive integer");
+			throw INVALID_PRICE;
 		}
 	} 
     
@@ -13,52 +13,169 @@
  */
 package edu.ncsu.csc326.coffeemaker;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
 public class RecipeBook {
 	
-	/** Array of recipes in coffee maker*/
-	private Recipe [] recipeArray;
+	/** Current snapshot of the recipes in coffee maker */
+	private volatile RecipeMenu menu;
 	/** Number of recipes in coffee maker */
-	private final int NUM_RECIPES = 3; 
+	private static final int NUM_RECIPES = 3; 
+	/** Whether the array grows when every slot is taken */
+	private final boolean growable;
+	/** Slot of each recipe, keyed by recipe name */
+	private final Map<String, Integer> slotsByName;
+	/** Slots that currently hold a recipe */
+	private final BitSet usedSlots;
 	
 	/**
 	 * Default constructor for a RecipeBook.
 	 */
 	public RecipeBook() {
-		recipeArray = new Recipe[NUM_RECIPES];
+		this(NUM_RECIPES, false);
 	}
 	
 	/**
-	 * Returns the recipe array.
-	 * @param r
+	 * Constructor for a RecipeBook with the given number of slots.
+	 * A growable book doubles its slots whenever a recipe is added
+	 * to a full book; a recipe keeps its slot index until it is
+	 * deleted.
+	 * @param capacity
+	 * @param growable
+	 */
+	public RecipeBook(int capacity, boolean growable) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("A recipe book needs at least one slot");
+		}
+		menu = new RecipeMenu(new Recipe[capacity], 0, 0, new RecipeIndex());
+		this.growable = growable;
+		slotsByName = new HashMap<String, Integer>();
+		usedSlots = new BitSet(capacity);
+	}
+	
+	/**
+	 * Returns the recipe array of the current menu without
+	 * locking.  The array is a snapshot shared with other
+	 * readers and must not be modified.
 	 * @return Recipe[]
 	 */
-	public synchronized Recipe[] getRecipes() {
-		return recipeArray;
+	public Recipe[] getRecipes() {
+		return menu.recipes();
+	}
+	
+	/**
+	 * Returns the current menu without locking.
+	 * @return RecipeMenu
+	 */
+	public RecipeMenu getMenu() {
+		return menu;
 	}
 	
+	/**
+	 * Returns the search index of the current menu without
+	 * locking.  Each change to the book publishes a new index with
+	 * its menu, so a caller that needs the recipes a query names
+	 * should take both from one getMenu.
+	 * @return RecipeIndex
+	 */
+	public RecipeIndex getIndex() {
+		return menu.getIndex();
+	}
+	
+	/**
+	 * Returns the slot of the recipe with the given name,
+	 * or -1 if there is no such recipe.  Names are indexed when
+	 * a recipe is added, so recipes in the book should not be
+	 * renamed.
+	 * @param name
+	 * @return int
+	 */
+	public synchronized int indexOf(String name) {
+		Integer slot = slotsByName.get(name);
+		return slot == null ? -1 : slot;
+	}
+	
+	/**
+	 * Adds the recipe to the first empty slot.  Returns false if
+	 * a recipe with the same name already exists or if the book
+	 * is full and cannot grow.
+	 * @param r
+	 * @return boolean
+	 */
 	public synchronized boolean addRecipe(Recipe r) {
-		//Assume recipe doesn't exist in the array until 
-		//find out otherwise
-		boolean exists = false;
-		//Check that recipe doesn't already exist in array
-		for (int i = 0; i < recipeArray.length; i++ ) {
-			if (r.equals(recipeArray[i])) {
-				exists = true;
+		//Check that recipe doesn't already exist in the book
+		if (slotsByName.containsKey(r.getName())) {
+			return false;
+		}
+		//Find the first empty spot, growing the array if allowed
+		Recipe[] recipeArray = menu.recipes();
+		int slot = usedSlots.nextClearBit(0);
+		int length = recipeArray.length;
+		if (slot >= length) {
+			if (!growable) {
+				return false;
 			}
+			length *= 2;
 		}
-		//Assume recipe cannot be added until find an empty
-		//spot
-		boolean added = false;
-		//Check for first empty spot in array
-		if (!exists) {
-			for (int i = 0; i < recipeArray.length && !added; i++) {
-				if (recipeArray[i] == null) {
-					recipeArray[i] = r;
-					added = true;
+		Recipe[] next = Arrays.copyOf(recipeArray, length);
+		next[slot] = r;
+		usedSlots.set(slot);
+		slotsByName.put(r.getName(), slot);
+		RecipeIndex index = menu.getIndex().copy();
+		index.add(slot, r);
+		publish(next, index);
+		return true;
+	}
+
+	/**
+	 * Adds many recipes with one copy of the recipe array.  Each
+	 * recipe takes the first empty slot, as with addRecipe, and
+	 * added[i] is set to whether recipes[i] was added; null entries
+	 * are skipped.  Returns the number of recipes added.
+	 * @param recipes
+	 * @param added
+	 * @return int
+	 */
+	public synchronized int addRecipes(Recipe[] recipes, boolean[] added) {
+		Recipe[] next = menu.recipes();
+		RecipeIndex index = null;
+		boolean copied = false;
+		int count = 0;
+		int slot = usedSlots.nextClearBit(0);
+		for (int i = 0; i < recipes.length; i++) {
+			Recipe r = recipes[i];
+			added[i] = false;
+			if (r == null || slotsByName.containsKey(r.getName())) {
+				continue;
+			}
+			if (slot >= next.length) {
+				if (!growable) {
+					continue;
 				}
+				next = Arrays.copyOf(next, next.length * 2);
+				copied = true;
+			} else if (!copied) {
+				next = next.clone();
+				copied = true;
+			}
+			if (index == null) {
+				index = menu.getIndex().copy();
 			}
+			next[slot] = r;
+			usedSlots.set(slot);
+			slotsByName.put(r.getName(), slot);
+			index.add(slot, r);
+			added[i] = true;
+			count++;
+			slot = usedSlots.nextClearBit(slot + 1);
 		}
-		return added;
+		if (copied) {
+			publish(next, index);
+		}
+		return count;
 	}
 
 	/**
@@ -68,12 +185,19 @@ public class RecipeBook {
 	 * @return String
 	 */
 	public synchronized String deleteRecipe(int recipeToDelete) {
+		Recipe[] recipeArray = menu.recipes();
 		if (recipeToDelete < 0 || recipeToDelete >= recipeArray.length) {
 			return null;
 		}
 		if (recipeArray[recipeToDelete] != null) {
 			String recipeName = recipeArray[recipeToDelete].getName();
-			recipeArray[recipeToDelete] = null;
+			Recipe[] next = recipeArray.clone();
+			next[recipeToDelete] = null;
+			usedSlots.clear(recipeToDelete);
+			slotsByName.remove(recipeName);
+			RecipeIndex index = menu.getIndex().copy();
+			index.remove(recipeToDelete);
+			publish(next, index);
 			return recipeName;
 		} else {
 			return null;
@@ -82,23 +206,79 @@ public class RecipeBook {
 	
 	/**
 	 * Returns the name of the recipe edited at the position specified
-	 * and null if the recipe does not exist.
+	 * and null if the recipe does not exist.  The new recipe takes
+	 * over the old recipe's name.
 	 * @param recipeToEdit
 	 * @param newRecipe
 	 * @return String
 	 */
 	public synchronized String editRecipe(int recipeToEdit, Recipe newRecipe) {
+		Recipe[] recipeArray = menu.recipes();
 		if (recipeToEdit < 0 || recipeToEdit >= recipeArray.length) {
 			return null;
 		}
 		if (recipeArray[recipeToEdit] != null) {
 			String recipeName = recipeArray[recipeToEdit].getName();
-			recipeArray[recipeToEdit] = newRecipe;
 			newRecipe.setName(recipeName);
+			Recipe[] next = recipeArray.clone();
+			next[recipeToEdit] = newRecipe;
+			RecipeIndex index = menu.getIndex().copy();
+			index.remove(recipeToEdit);
+			index.add(recipeToEdit, newRecipe);
+			publish(next, index);
 			return recipeName;
 		} else {
 			return null;
 		}
 	}
+	
+	/**
+	 * Fills an empty book with the given slots in one step, e.g.
+	 * from a Snapshot, instead of adding the recipes one by one.
+	 * Each recipe keeps its slot index.  A book that is too small
+	 * for the last recipe grows if it is growable.
+	 * @param recipes
+	 */
+	synchronized void load(Recipe[] recipes) {
+		if (!usedSlots.isEmpty()) {
+			throw new IllegalStateException("Only an empty recipe book can be loaded");
+		}
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		int needed = 0;
+		for (int i = 0; i < recipes.length; i++) {
+			if (recipes[i] != null) {
+				if (slots.put(recipes[i].getName(), i) != null) {
+					throw new IllegalArgumentException("Recipe " + recipes[i].getName() + " appears twice");
+				}
+				needed = i + 1;
+			}
+		}
+		int length = menu.recipes().length;
+		if (needed > length && !growable) {
+			throw new IllegalArgumentException("The recipe book has only " + length + " slots");
+		}
+		while (length < needed) {
+			length *= 2;
+		}
+		Recipe[] next = Arrays.copyOf(recipes, length);
+		slotsByName.putAll(slots);
+		RecipeIndex index = new RecipeIndex();
+		for (int slot : slots.values()) {
+			usedSlots.set(slot);
+			index.add(slot, recipes[slot]);
+		}
+		publish(next, index);
+	}
+	
+	/**
+	 * Swaps in a new menu built from the given slots and their
+	 * index.  Callers must hold the lock and must not touch the
+	 * array or the index afterwards.
+	 * @param recipes
+	 * @param index
+	 */
+	private void publish(Recipe[] recipes, RecipeIndex index) {
+		menu = new RecipeMenu(recipes, usedSlots.cardinality(), menu.getVersion() + 1, index);
+	}
 
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Encodes recipes as a compact binary block for moving menus
+ * between machines without going through text.
+ *
+ * A block is a header of four ints (magic, recipe count, name
+ * bytes and ingredient count), one fixed-width record per recipe
+ * (name offset, name length, price and the units of each
+ * Ingredient id up to the ingredient count, which is the largest
+ * of any recipe in the block) and then every name, in UTF-8, back
+ * to back.  The records and the names are each moved with one
+ * bulk copy.  Ints are big-endian whatever the order of the
+ * buffer.  Blocks written before the ingredient count was added,
+ * with a three int header and the four standard amounts, are
+ * still decoded.
+ */
+public final class RecipeCodec {
+
+	/** "CMRC", to recognise blocks with the four standard amounts */
+	private static final int MAGIC_STANDARD = 0x434D5243;
+	/** "CMR2", to recognise blocks with an ingredient count */
+	private static final int MAGIC = 0x434D5232;
+	/** Ints in the header */
+	private static final int HEADER_INTS = 4;
+	/** Ints in each recipe record before its amounts */
+	private static final int RECORD_INTS = 3;
+
+	private RecipeCodec() {
+	}
+
+	/**
+	 * Returns the number of bytes encode needs for the recipes.
+	 * Null entries are skipped.
+	 * @param recipes
+	 * @return int
+	 */
+	public static int encodedSize(Recipe[] recipes) {
+		int size = HEADER_INTS * 4;
+		int width = ingredientCount(recipes);
+		for (Recipe r : recipes) {
+			if (r != null) {
+				size += (RECORD_INTS + width) * 4 + r.getName().getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of amounts in each record, enough for the
+	 * recipe with the most ingredients.
+	 */
+	private static int ingredientCount(Recipe[] recipes) {
+		int width = Ingredient.STANDARD;
+		for (Recipe r : recipes) {
+			if (r != null) {
+				width = Math.max(width, r.getIngredientCount());
+			}
+		}
+		return width;
+	}
+
+	/**
+	 * Returns a new buffer, ready to be read, holding the recipes.
+	 * Null entries are skipped, so a recipe array from a
+	 * CoffeeMaker can be passed as it is.
+	 * @param recipes
+	 * @return ByteBuffer
+	 */
+	public static ByteBuffer encode(Recipe[] recipes) {
+		ByteBuffer out = ByteBuffer.allocate(encodedSize(recipes));
+		encode(recipes, out);
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Writes the recipes into the buffer at its position, which
+	 * is advanced past them.  Null entries are skipped.
+	 * @param recipes
+	 * @param out
+	 * @throws java.nio.BufferOverflowException if the buffer has
+	 * less room than encodedSize
+	 */
+	public static void encode(Recipe[] recipes, ByteBuffer out) {
+		int count = 0;
+		for (Recipe r : recipes) {
+			if (r != null) {
+				count++;
+			}
+		}
+		int width = ingredientCount(recipes);
+		int recordInts = RECORD_INTS + width;
+		byte[][] names = new byte[count][];
+		int[] records = new int[count * recordInts];
+		int nameBytes = 0;
+		int i = 0;
+		for (Recipe r : recipes) {
+			if (r != null) {
+				byte[] name = r.getName().getBytes(StandardCharsets.UTF_8);
+				int[] amounts = r.amounts();
+				int at = i * recordInts;
+				records[at] = nameBytes;
+				records[at + 1] = name.length;
+				records[at + 2] = r.getPrice();
+				System.arraycopy(amounts, 0, records, at + RECORD_INTS, amounts.length);
+				names[i++] = name;
+				nameBytes += name.length;
+			}
+		}
+		ByteBuffer block = out.duplicate().order(ByteOrder.BIG_ENDIAN);
+		block.putInt(MAGIC).putInt(count).putInt(nameBytes).putInt(width);
+		block.asIntBuffer().put(records);
+		block.position(block.position() + records.length * 4);
+		for (byte[] name : names) {
+			block.put(name);
+		}
+		out.position(block.position());
+	}
+
+	/**
+	 * Reads a block of recipes from the buffer at its position,
+	 * which is advanced past them.
+	 * @param in
+	 * @return Recipe []
+	 * @throws RecipeException if the buffer does not hold a recipe
+	 * block or a recipe has a negative price or amount
+	 */
+	public static Recipe[] decode(ByteBuffer in) throws RecipeException {
+		ByteBuffer block = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+		int magic = block.remaining() < (HEADER_INTS - 1) * 4 ? 0 : block.getInt();
+		if (magic != MAGIC && magic != MAGIC_STANDARD) {
+			throw new RecipeException("The buffer does not hold recipes");
+		}
+		int count = block.getInt();
+		int nameBytes = block.getInt();
+		int width = Ingredient.STANDARD;
+		if (magic == MAGIC) {
+			if (block.remaining() < 4) {
+				throw new RecipeException("The recipe block is truncated");
+			}
+			width = block.getInt();
+		}
+		int recordInts = RECORD_INTS + width;
+		if (count < 0 || nameBytes < 0 || width < Ingredient.STANDARD
+				|| (long) count * recordInts * 4 + nameBytes > block.remaining()) {
+			throw new RecipeException("The recipe block is truncated");
+		}
+		int[] records = new int[count * recordInts];
+		block.asIntBuffer().get(records);
+		block.position(block.position() + records.length * 4);
+		byte[] names = new byte[nameBytes];
+		block.get(names);
+
+		Recipe[] recipes = new Recipe[count];
+		for (int i = 0; i < count; i++) {
+			int at = i * recordInts;
+			int nameOffset = records[at];
+			int nameLength = records[at + 1];
+			if (nameOffset < 0 || nameLength < 0 || nameOffset > nameBytes - nameLength) {
+				throw new RecipeException("The name of recipe " + i + " is outside the block");
+			}
+			Recipe r = new Recipe();
+			r.setName(new String(names, nameOffset, nameLength, StandardCharsets.UTF_8));
+			r.setPrice(records[at + 2]);
+			for (int id = 0; id < width; id++) {
+				int units = records[at + RECORD_INTS + id];
+				// Other recipes' extra ingredients are padding here
+				if (units != 0 || id < Ingredient.STANDARD) {
+					r.setAmount(id, units);
+				}
+			}
+			recipes[i] = r;
+		}
+		in.position(block.position());
+		return recipes;
+	}
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Finds recipes by name prefix, price and ingredient amounts without
+ * looking at every recipe.  Each RecipeMenu carries the index of its
+ * own recipes: a RecipeBook change copies the index, updates the
+ * copy and publishes it with the new menu, so an index never changes
+ * once it can be queried and its results always name the slots of
+ * its menu.
+ *
+ * Every query returns a new BitSet of the matching slots, so queries
+ * are combined with BitSet.and, e.g. the recipes with no milk under
+ * a price of 50:
+ *
+ *   BitSet slots = index.priceBetween(0, 49);
+ *   slots.and(index.without(Ingredient.MILK));
+ *
+ * Names are kept in a trie, ignoring case; prices and the amount of
+ * each ingredient are kept in sorted maps from a value to the slots
+ * that have it.  A query costs time in the number of names, prices
+ * or amounts it matches, not in the size of the menu.  The index
+ * holds a copy of each recipe as it was added, so recipes should be
+ * changed through the book rather than modified in place.  Queries
+ * take no lock.
+ *
+ * A copy shares its trie nodes, maps and bitmaps with the index it
+ * was copied from.  Changing the copy copies only what the change
+ * touches: the trie path of the name and the maps and bitmaps of the
+ * recipe's price and ingredients.  Everything else stays shared with
+ * the older menus.
+ */
+public class RecipeIndex {
+
+	/** The trie of lower case names */
+	private Node root;
+	/** Slots that hold a recipe */
+	private BitSet slots;
+	/** Slots by price */
+	private TreeMap<Integer, BitSet> byPrice;
+	/** Slots by units of each ingredient, by Ingredient id; 0 is not kept */
+	private List<TreeMap<Integer, BitSet>> byAmount;
+	/** Slots that use each ingredient, by Ingredient id */
+	private List<BitSet> using;
+	/** The recipe each slot was indexed with */
+	private RecipeValue[] indexed;
+	/** The nodes, maps, bitmaps and arrays this index made and may change */
+	private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+	RecipeIndex() {
+		root = own(new Node());
+		slots = own(new BitSet());
+		byPrice = own(new TreeMap<Integer, BitSet>());
+		byAmount = own(new ArrayList<TreeMap<Integer, BitSet>>());
+		using = own(new ArrayList<BitSet>());
+		indexed = own(new RecipeValue[0]);
+	}
+
+	private RecipeIndex(RecipeIndex from) {
+		root = from.root;
+		slots = from.slots;
+		byPrice = from.byPrice;
+		byAmount = from.byAmount;
+		using = from.using;
+		indexed = from.indexed;
+	}
+
+	/**
+	 * Returns a copy of the index that can be changed before it is
+	 * published, leaving this one as it is.  The copy shares
+	 * everything with this index until it is changed.
+	 * @return RecipeIndex
+	 */
+	RecipeIndex copy() {
+		return new RecipeIndex(this);
+	}
+
+	/**
+	 * Indexes the recipe at the given slot, which must be empty.
+	 * Only an unpublished copy may be changed.
+	 * @param slot
+	 * @param r
+	 */
+	void add(int slot, Recipe r) {
+		RecipeValue value = RecipeValue.of(r);
+		if (slot >= indexed.length) {
+			indexed = own(Arrays.copyOf(indexed, Math.max(slot + 1, indexed.length * 2)));
+		} else {
+			indexed = mutable(indexed);
+		}
+		indexed[slot] = value;
+		slots = mutable(slots);
+		slots.set(slot);
+		insert(key(value.getName()), slot);
+		byPrice = mutable(byPrice);
+		set(byPrice, value.getPrice(), slot);
+		byAmount = mutable(byAmount);
+		using = mutable(using);
+		for (int i = 0; i < value.getIngredientCount(); i++) {
+			int units = value.getAmount(i);
+			if (units > 0) {
+				while (using.size() <= i) {
+					byAmount.add(own(new TreeMap<Integer, BitSet>()));
+					using.add(own(new BitSet()));
+				}
+				TreeMap<Integer, BitSet> amounts = mutable(byAmount.get(i));
+				byAmount.set(i, amounts);
+				set(amounts, units, slot);
+				BitSet users = mutable(using.get(i));
+				using.set(i, users);
+				users.set(slot);
+			}
+		}
+	}
+
+	/**
+	 * Drops the recipe at the given slot from the index.  Only an
+	 * unpublished copy may be changed.
+	 * @param slot
+	 */
+	void remove(int slot) {
+		RecipeValue value = slot < indexed.length ? indexed[slot] : null;
+		if (value == null) {
+			return;
+		}
+		indexed = mutable(indexed);
+		indexed[slot] = null;
+		slots = mutable(slots);
+		slots.clear(slot);
+		delete(key(value.getName()), slot);
+		byPrice = mutable(byPrice);
+		clear(byPrice, value.getPrice(), slot);
+		byAmount = mutable(byAmount);
+		using = mutable(using);
+		for (int i = 0; i < value.getIngredientCount(); i++) {
+			int units = value.getAmount(i);
+			if (units > 0) {
+				TreeMap<Integer, BitSet> amounts = mutable(byAmount.get(i));
+				byAmount.set(i, amounts);
+				clear(amounts, units, slot);
+				BitSet users = mutable(using.get(i));
+				using.set(i, users);
+				users.clear(slot);
+			}
+		}
+	}
+
+	/**
+	 * Returns the slots of the recipes whose names start with the
+	 * prefix, ignoring case.
+	 * @param prefix
+	 * @return BitSet
+	 */
+	public BitSet startingWith(String prefix) {
+		BitSet result = new BitSet();
+		Node node = root;
+		String key = key(prefix);
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.child(key.charAt(i));
+		}
+		if (node != null) {
+			collect(node, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slots of the recipes priced from min to max,
+	 * both included.
+	 * @param min
+	 * @param max
+	 * @return BitSet
+	 */
+	public BitSet priceBetween(int min, int max) {
+		BitSet result = new BitSet();
+		if (min <= max) {
+			union(byPrice.subMap(min, true, max, true), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slots of the recipes that need from min to max
+	 * units, both included, of the ingredient with the given id.
+	 * @param ingredient
+	 * @param min
+	 * @param max
+	 * @return BitSet
+	 */
+	public BitSet amountBetween(int ingredient, int min, int max) {
+		BitSet result = new BitSet();
+		if (min > max || max < 0) {
+			return result;
+		}
+		if (ingredient < byAmount.size()) {
+			union(byAmount.get(ingredient).subMap(Math.max(min, 1), true, max, true), result);
+		}
+		if (min <= 0) {
+			result.or(unused(ingredient));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slots of the recipes that use the ingredient with
+	 * the given id.
+	 * @param ingredient
+	 * @return BitSet
+	 */
+	public BitSet using(int ingredient) {
+		return ingredient < using.size() ? (BitSet) using.get(ingredient).clone() : new BitSet();
+	}
+
+	/**
+	 * Returns the slots of the recipes that do not use the
+	 * ingredient with the given id.
+	 * @param ingredient
+	 * @return BitSet
+	 */
+	public BitSet without(int ingredient) {
+		return unused(ingredient);
+	}
+
+	/**
+	 * Returns the slots of every recipe in the index.
+	 * @return BitSet
+	 */
+	public BitSet all() {
+		return (BitSet) slots.clone();
+	}
+
+	private BitSet unused(int ingredient) {
+		BitSet result = (BitSet) slots.clone();
+		if (ingredient < using.size()) {
+			result.andNot(using.get(ingredient));
+		}
+		return result;
+	}
+
+	private void insert(String key, int slot) {
+		root = mutable(root);
+		Node node = root;
+		node.count++;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			Node child = node.child(c);
+			child = child == null ? own(new Node()) : mutable(child);
+			node.put(c, child);
+			node = child;
+			node.count++;
+		}
+		node.slots = node.slots == null ? own(new BitSet()) : mutable(node.slots);
+		node.slots.set(slot);
+	}
+
+	private void delete(String key, int slot) {
+		root = mutable(root);
+		Node node = root;
+		node.count--;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			Node child = node.child(c);
+			if (child.count == 1) {
+				// This was the only name under the child
+				node.removeChild(c);
+				return;
+			}
+			child = mutable(child);
+			child.count--;
+			node.put(c, child);
+			node = child;
+		}
+		node.slots = mutable(node.slots);
+		node.slots.clear(slot);
+		if (node.slots.isEmpty()) {
+			node.slots = null;
+		}
+	}
+
+	/**
+	 * Adds the slots of every name under the node to the result.
+	 */
+	private static void collect(Node node, BitSet result) {
+		if (node.slots != null) {
+			result.or(node.slots);
+		}
+		for (int i = 0; i < node.size; i++) {
+			collect(node.children[i], result);
+		}
+	}
+
+	private static void union(Map<Integer, BitSet> range, BitSet result) {
+		for (BitSet matches : range.values()) {
+			result.or(matches);
+		}
+	}
+
+	private void set(TreeMap<Integer, BitSet> map, int value, int slot) {
+		BitSet matches = map.get(value);
+		matches = matches == null ? own(new BitSet()) : mutable(matches);
+		map.put(value, matches);
+		matches.set(slot);
+	}
+
+	private void clear(TreeMap<Integer, BitSet> map, int value, int slot) {
+		BitSet matches = mutable(map.get(value));
+		matches.clear(slot);
+		if (matches.isEmpty()) {
+			map.remove(value);
+		} else {
+			map.put(value, matches);
+		}
+	}
+
+	/**
+	 * Marks something this index made as its own to change.
+	 */
+	private <T> T own(T made) {
+		owned.add(made);
+		return made;
+	}
+
+	/*
+	 * Each mutable method returns the argument if this index made it
+	 * and otherwise a copy, which the caller puts in its place.
+	 * Copies are shallow: the contents stay shared.
+	 */
+
+	private Node mutable(Node node) {
+		return owned.contains(node) ? node : own(node.copy());
+	}
+
+	private BitSet mutable(BitSet bits) {
+		return owned.contains(bits) ? bits : own((BitSet) bits.clone());
+	}
+
+	private TreeMap<Integer, BitSet> mutable(TreeMap<Integer, BitSet> map) {
+		return owned.contains(map) ? map : own(new TreeMap<Integer, BitSet>(map));
+	}
+
+	private <T> List<T> mutable(List<T> list) {
+		return owned.contains(list) ? list : own(new ArrayList<T>(list));
+	}
+
+	private RecipeValue[] mutable(RecipeValue[] values) {
+		return owned.contains(values) ? values : own(values.clone());
+	}
+
+	private static String key(String name) {
+		StringBuilder key = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			key.append(Character.toLowerCase(name.charAt(i)));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * A trie node.  Children are kept sorted by their character so
+	 * that a lookup is a binary search.
+	 */
+	private static final class Node {
+		char[] keys = new char[0];
+		Node[] children = new Node[0];
+		int size;
+		/** Number of names at or below this node */
+		int count;
+		/** Slots of the names that end here, or null */
+		BitSet slots;
+
+		/**
+		 * Returns a node with its own keys and children arrays that
+		 * shares the children and slots with this one.
+		 */
+		Node copy() {
+			Node copy = new Node();
+			copy.keys = keys.clone();
+			copy.children = children.clone();
+			copy.size = size;
+			copy.count = count;
+			copy.slots = slots;
+			return copy;
+		}
+
+		Node child(char c) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			return i >= 0 ? children[i] : null;
+		}
+
+		/**
+		 * Sets the child for the character, adding it if there is none.
+		 */
+		void put(char c, Node child) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			if (i >= 0) {
+				children[i] = child;
+				return;
+			}
+			i = -i - 1;
+			if (size == keys.length) {
+				int length = Math.max(2, size * 2);
+				keys = Arrays.copyOf(keys, length);
+				children = Arrays.copyOf(children, length);
+			}
+			System.arraycopy(keys, i, keys, i + 1, size - i);
+			System.arraycopy(children, i, children, i + 1, size - i);
+			keys[i] = c;
+			children[i] = child;
+			size++;
+		}
+
+		void removeChild(char c) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+			System.arraycopy(children, i + 1, children, i, size - i - 1);
+			size--;
+			children[size] = null;
+		}
+	}
+}
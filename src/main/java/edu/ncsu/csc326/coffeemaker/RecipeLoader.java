@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Loads recipes from CSV into a coffee maker.  Each row holds
+ * name, price, coffee, milk, sugar and chocolate; the name may be
+ * quoted to contain commas, and a first row that names those six
+ * columns is taken as a header.
+ *
+ * The file is read a chunk of rows at a time, so it may be larger
+ * than the heap.  The rows of a chunk are parsed and validated in
+ * parallel and then added to the recipe book in one step with
+ * CoffeeMaker.addRecipes.  Rows that cannot be loaded are reported
+ * with their line numbers.
+ */
+public class RecipeLoader {
+
+	/** Rows parsed together, by default */
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+	/** Most error messages kept in a Result */
+	public static final int MAX_ERRORS = 1000;
+	/** Column names of the optional header row */
+	private static final String[] HEADER = {"name", "price", "coffee", "milk", "sugar", "chocolate"};
+
+	private final CoffeeMaker coffeeMaker;
+	private final int chunkSize;
+
+	/**
+	 * Creates a loader for the coffee maker.
+	 * @param coffeeMaker
+	 */
+	public RecipeLoader(CoffeeMaker coffeeMaker) {
+		this(coffeeMaker, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a loader that parses chunkSize rows at a time.
+	 * @param coffeeMaker
+	 * @param chunkSize
+	 */
+	public RecipeLoader(CoffeeMaker coffeeMaker, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("A chunk needs at least one row");
+		}
+		this.coffeeMaker = coffeeMaker;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * What a load did: how many recipes were added and why the
+	 * other rows were not.
+	 */
+	public static class Result {
+		private int loaded;
+		private int rejected;
+		private final List<String> errors = new ArrayList<String>();
+
+		/**
+		 * Returns the number of recipes added.
+		 * @return int
+		 */
+		public int getLoaded() {
+			return loaded;
+		}
+
+		/**
+		 * Returns the number of rows that were not added.
+		 * @return int
+		 */
+		public int getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Returns "line n: reason" for the first MAX_ERRORS
+		 * rejected rows.
+		 * @return List
+		 */
+		public List<String> getErrors() {
+			return Collections.unmodifiableList(errors);
+		}
+
+		private void reject(long line, String reason) {
+			rejected++;
+			if (errors.size() < MAX_ERRORS) {
+				errors.add("line " + line + ": " + reason);
+			}
+		}
+	}
+
+	/**
+	 * Loads the recipes in a UTF-8 CSV file.
+	 * @param file
+	 * @return Result
+	 * @throws IOException
+	 */
+	public Result load(Path file) throws IOException {
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return load(in);
+		}
+	}
+
+	/**
+	 * Loads the recipes read from the reader, which is not closed.
+	 * @param in
+	 * @return Result
+	 * @throws IOException
+	 */
+	public Result load(BufferedReader in) throws IOException {
+		Result result = new Result();
+		String[] lines = new String[chunkSize];
+		long[] lineNumbers = new long[chunkSize];
+		long lineNumber = 0;
+		int count = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty() || (lineNumber == 1 && isHeader(line))) {
+				continue;
+			}
+			lines[count] = line;
+			lineNumbers[count++] = lineNumber;
+			if (count == chunkSize) {
+				loadChunk(lines, lineNumbers, count, result);
+				count = 0;
+			}
+		}
+		loadChunk(lines, lineNumbers, count, result);
+		return result;
+	}
+
+	/**
+	 * Parses the rows in parallel and adds the good ones in one
+	 * step, in file order.
+	 */
+	private void loadChunk(String[] lines, long[] lineNumbers, int count, Result result) {
+		if (count == 0) {
+			return;
+		}
+		Recipe[] recipes = new Recipe[count];
+		String[] problems = new String[count];
+		IntStream.range(0, count).parallel().forEach(i -> {
+			try {
+				recipes[i] = parse(lines[i]);
+			} catch (RecipeException e) {
+				problems[i] = e.getMessage();
+			}
+		});
+		boolean[] added = new boolean[count];
+		result.loaded += coffeeMaker.addRecipes(recipes, added);
+		for (int i = 0; i < count; i++) {
+			if (problems[i] != null) {
+				result.reject(lineNumbers[i], problems[i]);
+			} else if (!added[i]) {
+				String name = recipes[i].getName();
+				result.reject(lineNumbers[i], coffeeMaker.indexOf(name) >= 0 
+						? "recipe " + name + " already exists" : "the recipe book is full");
+			}
+			lines[i] = null;
+		}
+	}
+
+	/**
+	 * Returns true if the row names the columns, in any case,
+	 * rather than holding a recipe.
+	 */
+	private static boolean isHeader(String line) {
+		String[] fields = line.split(",", -1);
+		if (fields.length != HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < HEADER.length; i++) {
+			if (!HEADER[i].equalsIgnoreCase(fields[i].trim())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses one CSV row into a recipe.
+	 * @param line
+	 * @return Recipe
+	 * @throws RecipeException if the row is malformed or invalid
+	 */
+	static Recipe parse(String line) throws RecipeException {
+		String[] fields = new String[6];
+		int field = 0;
+		int i = 0;
+		int length = line.length();
+		while (true) {
+			if (field == fields.length) {
+				throw new RecipeException("expected 6 fields but found more");
+			}
+			int end;
+			if (field == 0 && i < length && line.charAt(i) == '"') {
+				// Quoted name, with "" for a quote
+				StringBuilder name = new StringBuilder();
+				i++;
+				while (true) {
+					int quote = line.indexOf('"', i);
+					if (quote < 0) {
+						throw new RecipeException("unterminated quote in the name");
+					}
+					name.append(line, i, quote);
+					if (quote + 1 < length && line.charAt(quote + 1) == '"') {
+						name.append('"');
+						i = quote + 2;
+					} else {
+						i = quote + 1;
+						break;
+					}
+				}
+				fields[field++] = name.toString();
+				end = i;
+				if (end < length && line.charAt(end) != ',') {
+					throw new RecipeException("unexpected text after the quoted name");
+				}
+			} else {
+				end = line.indexOf(',', i);
+				if (end < 0) {
+					end = length;
+				}
+				fields[field++] = line.substring(i, end).trim();
+			}
+			if (end >= length) {
+				break;
+			}
+			i = end + 1;
+		}
+		if (field != fields.length) {
+			throw new RecipeException("expected 6 fields but found " + field);
+		}
+		if (fields[0].isEmpty()) {
+			throw new RecipeException("the recipe needs a name");
+		}
+		Recipe r = new Recipe();
+		r.setName(fields[0]);
+		r.setPrice(fields[1]);
+		r.setAmtCoffee(fields[2]);
+		r.setAmtMilk(fields[3]);
+		r.setAmtSugar(fields[4]);
+		r.setAmtChocolate(fields[5]);
+		return r;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * An immutable snapshot of the recipes in a RecipeBook, with a
+ * search index over them.  Every change to the book publishes a new
+ * menu with a higher version, so readers never block and never see
+ * a half-finished change.
+ */
+public final class RecipeMenu {
+	/** Recipes by slot; never modified once published */
+	private final Recipe[] recipes;
+	/** Number of non-empty slots */
+	private final int recipeCount;
+	/** Incremented by every change to the book */
+	private final long version;
+	/** Index over recipes; never modified once published */
+	private final RecipeIndex index;
+
+	RecipeMenu(Recipe[] recipes, int recipeCount, long version, RecipeIndex index) {
+		this.recipes = recipes;
+		this.recipeCount = recipeCount;
+		this.version = version;
+		this.index = index;
+	}
+
+	/**
+	 * Returns the recipe at the given slot, or null if the slot
+	 * is empty or does not exist.
+	 * @param slot
+	 * @return Recipe
+	 */
+	public Recipe getRecipe(int slot) {
+		return slot >= 0 && slot < recipes.length ? recipes[slot] : null;
+	}
+
+	/**
+	 * Returns the number of slots, empty or not.
+	 * @return int
+	 */
+	public int getSlotCount() {
+		return recipes.length;
+	}
+
+	/**
+	 * Returns the number of slots that hold a recipe.
+	 * @return int
+	 */
+	public int getRecipeCount() {
+		return recipeCount;
+	}
+
+	/**
+	 * Returns the version of the book this menu was taken from.
+	 * @return long
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the search index over this menu's recipes, so query
+	 * results always name the slots of this menu.
+	 * @return RecipeIndex
+	 */
+	public RecipeIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the backing array, which callers must not modify.
+	 */
+	Recipe[] recipes() {
+		return recipes;
+	}
+}
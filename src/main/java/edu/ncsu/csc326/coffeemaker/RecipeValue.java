@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.Arrays;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * An immutable recipe.  Unlike Recipe, a RecipeValue cannot change
+ * after it is built, so it can be shared between threads and kept
+ * as a map key without copying or locking.  Values are built with
+ * a Builder, which checks every field once; the hash is computed
+ * when the value is built, so unequal values rarely get as far as
+ * comparing names.
+ *
+ * Two values are equal if every field is equal.
+ */
+public final class RecipeValue {
+
+	private final String name;
+	private final int price;
+	/** Units of each ingredient, by Ingredient id; never modified */
+	private final int[] amounts;
+	private final int hash;
+
+	private RecipeValue(String name, int price, int[] amounts) {
+		this.name = name;
+		this.price = price;
+		this.amounts = amounts;
+		this.hash = 31 * (31 * name.hashCode() + price) + Arrays.hashCode(amounts);
+	}
+
+	/**
+	 * Returns a value with the same fields as the recipe.
+	 * @param r
+	 * @return RecipeValue
+	 */
+	public static RecipeValue of(Recipe r) {
+		return new RecipeValue(r.getName(), r.getPrice(), trim(r.amounts().clone()));
+	}
+
+	/**
+	 * Returns a new mutable recipe with the same fields.
+	 * @return Recipe
+	 */
+	public Recipe toRecipe() {
+		Recipe r = new Recipe();
+		r.setName(name);
+		try {
+			r.setPrice(price);
+			for (int i = 0; i < amounts.length; i++) {
+				r.setAmount(i, amounts[i]);
+			}
+		} catch (RecipeException e) {
+			// Every field was checked when the value was built
+			throw new IllegalStateException(e);
+		}
+		return r;
+	}
+
+	/**
+	 * @return   Returns the name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return   Returns the price.
+	 */
+	public int getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return   Returns the amtCoffee.
+	 */
+	public int getAmtCoffee() {
+		return amounts[Ingredient.COFFEE];
+	}
+
+	/**
+	 * @return   Returns the amtMilk.
+	 */
+	public int getAmtMilk() {
+		return amounts[Ingredient.MILK];
+	}
+
+	/**
+	 * @return   Returns the amtSugar.
+	 */
+	public int getAmtSugar() {
+		return amounts[Ingredient.SUGAR];
+	}
+
+	/**
+	 * @return   Returns the amtChocolate.
+	 */
+	public int getAmtChocolate() {
+		return amounts[Ingredient.CHOCOLATE];
+	}
+
+	/**
+	 * Returns the units of the ingredient with the given id, 0 if
+	 * the recipe does not use it.
+	 * @param ingredient
+	 * @return int
+	 */
+	public int getAmount(int ingredient) {
+		return ingredient < amounts.length ? amounts[ingredient] : 0;
+	}
+
+	/**
+	 * Returns the number of ingredient ids the value has amounts
+	 * for, at least Ingredient.STANDARD.
+	 * @return int
+	 */
+	public int getIngredientCount() {
+		return amounts.length;
+	}
+
+	/**
+	 * Returns the name of the recipe.
+	 * @return String
+	 */
+	public String toString() {
+		return name;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RecipeValue)) {
+			return false;
+		}
+		RecipeValue other = (RecipeValue) obj;
+		return hash == other.hash && price == other.price && name.equals(other.name)
+				&& Arrays.equals(amounts, other.amounts);
+	}
+
+	/**
+	 * Drops trailing zero amounts past the standard ingredients, so
+	 * that equal recipes have equal arrays.
+	 */
+	private static int[] trim(int[] amounts) {
+		int length = amounts.length;
+		while (length > Ingredient.STANDARD && amounts[length - 1] == 0) {
+			length--;
+		}
+		return length == amounts.length ? amounts : Arrays.copyOf(amounts, length);
+	}
+
+	/**
+	 * Collects and checks the fields of a RecipeValue.  A builder
+	 * can be reused; each build takes a copy of its fields.
+	 */
+	public static final class Builder {
+		private String name;
+		private int price;
+		private int[] amounts = new int[Ingredient.STANDARD];
+
+		/**
+		 * Starts a builder with no name, a price of 0 and every
+		 * amount 0.
+		 */
+		public Builder() {
+		}
+
+		/**
+		 * @param name   The name to set.
+		 * @return Builder
+		 * @throws RecipeException if name is null or empty
+		 */
+		public Builder name(String name) throws RecipeException {
+			if (name == null || name.isEmpty()) {
+				throw new RecipeException("A recipe needs a name");
+			}
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * @param price   The price to set.
+		 * @return Builder
+		 * @throws RecipeException if price is negative
+		 */
+		public Builder price(int price) throws RecipeException {
+			Recipe.checkPrice(price);
+			this.price = price;
+			return this;
+		}
+
+		/**
+		 * @param amtCoffee   The units of coffee to set.
+		 * @return Builder
+		 * @throws RecipeException if amtCoffee is negative
+		 */
+		public Builder amtCoffee(int amtCoffee) throws RecipeException {
+			return amount(Ingredient.COFFEE, amtCoffee);
+		}
+
+		/**
+		 * @param amtMilk   The units of milk to set.
+		 * @return Builder
+		 * @throws RecipeException if amtMilk is negative
+		 */
+		public Builder amtMilk(int amtMilk) throws RecipeException {
+			return amount(Ingredient.MILK, amtMilk);
+		}
+
+		/**
+		 * @param amtSugar   The units of sugar to set.
+		 * @return Builder
+		 * @throws RecipeException if amtSugar is negative
+		 */
+		public Builder amtSugar(int amtSugar) throws RecipeException {
+			return amount(Ingredient.SUGAR, amtSugar);
+		}
+
+		/**
+		 * @param amtChocolate   The units of chocolate to set.
+		 * @return Builder
+		 * @throws RecipeException if amtChocolate is negative
+		 */
+		public Builder amtChocolate(int amtChocolate) throws RecipeException {
+			return amount(Ingredient.CHOCOLATE, amtChocolate);
+		}
+
+		/**
+		 * Sets the units of the ingredient with the given id.
+		 * @param ingredient
+		 * @param units
+		 * @return Builder
+		 * @throws RecipeException if units is negative
+		 */
+		public Builder amount(int ingredient, int units) throws RecipeException {
+			Recipe.checkAmount(ingredient, units);
+			if (ingredient >= amounts.length) {
+				amounts = Arrays.copyOf(amounts, ingredient + 1);
+			}
+			amounts[ingredient] = units;
+			return this;
+		}
+
+		/**
+		 * Returns a value with the fields set so far.
+		 * @return RecipeValue
+		 * @throws RecipeException if no name was set
+		 */
+		public RecipeValue build() throws RecipeException {
+			if (name == null) {
+				throw new RecipeException("A recipe needs a name");
+			}
+			return new RecipeValue(name, price, trim(amounts.clone()));
+		}
+	}
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sales figures derived from a SalesLedger: revenue and orders
+ * per recipe, average change, and orders, revenue and ingredients
+ * used per time window.
+ *
+ * The figures only change when refresh is called.  Each refresh
+ * sums the sales recorded since the last one, split across cores
+ * with fork/join, and adds them to the running totals, so the
+ * cost of a refresh depends on the new sales and not on the size
+ * of the ledger.
+ */
+public class SalesAnalytics {
+
+	/** Ranges of at most this many sales are summed on one thread */
+	static final int THRESHOLD = 1 << 16;
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	/** Columns of a window's totals; the units of each ingredient follow */
+	private static final int ORDERS = 0;
+	private static final int REVENUE = 1;
+	/** Column of the units of the first ingredient */
+	private static final int AMOUNTS = 2;
+
+	private final SalesLedger ledger;
+	/** Ingredients each of the ledger's sales has units for */
+	private final int ingredients;
+	private final long windowMillis;
+	private final ForkJoinPool pool;
+
+	/** Sales already added to the totals */
+	private long scanned;
+	private final Totals totals = new Totals(0);
+
+	/**
+	 * Creates analytics for the ledger, grouping sales into windows
+	 * of the given length, and sums them in the common fork/join
+	 * pool.
+	 * @param ledger
+	 * @param window
+	 * @param unit
+	 */
+	public SalesAnalytics(SalesLedger ledger, long window, TimeUnit unit) {
+		this(ledger, window, unit, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates analytics for the ledger, grouping sales into windows
+	 * of the given length, and sums them in the given pool.
+	 * @param ledger
+	 * @param window
+	 * @param unit
+	 * @param pool
+	 */
+	public SalesAnalytics(SalesLedger ledger, long window, TimeUnit unit, ForkJoinPool pool) {
+		this.windowMillis = unit.toMillis(window);
+		if (windowMillis < 1) {
+			throw new IllegalArgumentException("A window must be at least a millisecond long");
+		}
+		this.ledger = ledger;
+		this.ingredients = ledger.getIngredientCount();
+		this.pool = pool;
+	}
+
+	/**
+	 * Adds the sales recorded since the last refresh to the totals
+	 * and returns how many there were.
+	 * @return long
+	 */
+	public synchronized long refresh() {
+		long from = scanned;
+		long to = ledger.size();
+		if (to == from) {
+			return 0;
+		}
+		// Read after size, so every name id below to is counted
+		int names = ledger.getNameCount();
+		totals.add(pool.invoke(new Scan(from, to, names)));
+		scanned = to;
+		return to - from;
+	}
+
+	/**
+	 * Returns the number of sales in the totals.
+	 * @return long
+	 */
+	public synchronized long getOrders() {
+		return totals.orders;
+	}
+
+	/**
+	 * Returns the total revenue of the sales in the totals.
+	 * @return long
+	 */
+	public synchronized long getRevenue() {
+		long revenue = 0;
+		for (long recipeRevenue : totals.revenue) {
+			revenue += recipeRevenue;
+		}
+		return revenue;
+	}
+
+	/**
+	 * Returns the average change given per sale, or 0 if there
+	 * have been no sales.
+	 * @return double
+	 */
+	public synchronized double getAverageChange() {
+		return totals.orders == 0 ? 0 : (double) totals.change / totals.orders;
+	}
+
+	/**
+	 * Returns the revenue of each recipe, by name, in the order the
+	 * recipes were first sold.
+	 * @return Map
+	 */
+	public synchronized Map<String, Long> getRevenueByRecipe() {
+		return byRecipe(totals.revenue);
+	}
+
+	/**
+	 * Returns the number of sales of each recipe, by name, in the
+	 * order the recipes were first sold.
+	 * @return Map
+	 */
+	public synchronized Map<String, Long> getOrdersByRecipe() {
+		return byRecipe(totals.recipeOrders);
+	}
+
+	private Map<String, Long> byRecipe(long[] values) {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (int id = 0; id < values.length; id++) {
+			if (totals.recipeOrders[id] > 0) {
+				result.put(ledger.getName(id), values[id]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the windows that have sales, oldest first.
+	 * @return List
+	 */
+	public synchronized List<Window> getWindows() {
+		List<Window> windows = new ArrayList<Window>(totals.windows.size());
+		for (Map.Entry<Long, long[]> entry : totals.windows.entrySet()) {
+			windows.add(new Window(entry.getKey(), entry.getKey() + windowMillis, entry.getValue().clone()));
+		}
+		return Collections.unmodifiableList(windows);
+	}
+
+	/**
+	 * Sums the sales in [from, to) on the current thread.
+	 */
+	private Totals sum(long from, long to, int names) {
+		Totals sum = new Totals(names);
+		long windowStart = Long.MIN_VALUE;
+		long[] window = null;
+		for (long i = from; i < to; i++) {
+			long time = ledger.getTime(i);
+			if (window == null || time < windowStart || time - windowStart >= windowMillis) {
+				// Sales are nearly always in time order, so the map is
+				// only consulted when a sale falls in another window
+				windowStart = Math.floorDiv(time, windowMillis) * windowMillis;
+				window = sum.windows.get(windowStart);
+				if (window == null) {
+					window = new long[AMOUNTS + ingredients];
+					sum.windows.put(windowStart, window);
+				}
+			}
+			int id = ledger.getNameId(i);
+			int price = ledger.getPrice(i);
+			sum.orders++;
+			sum.change += ledger.getChange(i);
+			sum.revenue[id] += price;
+			sum.recipeOrders[id]++;
+			window[ORDERS]++;
+			window[REVENUE] += price;
+			for (int k = 0; k < ingredients; k++) {
+				window[AMOUNTS + k] += ledger.getAmount(i, k);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Splits a range of sales in half until it is small enough to
+	 * sum directly, then merges the halves' totals.
+	 */
+	private class Scan extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+		private final int names;
+
+		Scan(long from, long to, int names) {
+			this.from = from;
+			this.to = to;
+			this.names = names;
+		}
+
+		@Override
+		protected Totals compute() {
+			if (to - from <= THRESHOLD) {
+				return sum(from, to, names);
+			}
+			long middle = (from + to) >>> 1;
+			Scan left = new Scan(from, middle, names);
+			left.fork();
+			Totals right = new Scan(middle, to, names).compute();
+			Totals totals = left.join();
+			totals.add(right);
+			return totals;
+		}
+	}
+
+	/**
+	 * Totals for a set of sales.  Per-recipe totals are indexed by
+	 * the ledger's name ids.
+	 */
+	private static class Totals {
+		long orders;
+		long change;
+		long[] revenue;
+		long[] recipeOrders;
+		final TreeMap<Long, long[]> windows = new TreeMap<Long, long[]>();
+
+		Totals(int names) {
+			revenue = new long[names];
+			recipeOrders = new long[names];
+		}
+
+		/**
+		 * Adds other's totals to these.
+		 */
+		void add(Totals other) {
+			orders += other.orders;
+			change += other.change;
+			if (other.revenue.length > revenue.length) {
+				revenue = Arrays.copyOf(revenue, other.revenue.length);
+				recipeOrders = Arrays.copyOf(recipeOrders, other.recipeOrders.length);
+			}
+			for (int id = 0; id < other.revenue.length; id++) {
+				revenue[id] += other.revenue[id];
+				recipeOrders[id] += other.recipeOrders[id];
+			}
+			for (Map.Entry<Long, long[]> entry : other.windows.entrySet()) {
+				long[] window = windows.get(entry.getKey());
+				if (window == null) {
+					windows.put(entry.getKey(), entry.getValue());
+				} else {
+					for (int column = 0; column < window.length; column++) {
+						window[column] += entry.getValue()[column];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Totals for the sales in one time window.
+	 */
+	public static final class Window {
+		private final long start;
+		private final long end;
+		private final long[] values;
+
+		private Window(long start, long end, long[] values) {
+			this.start = start;
+			this.end = end;
+			this.values = values;
+		}
+
+		/**
+		 * Returns the start of the window, in milliseconds since the
+		 * epoch.
+		 * @return long
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the end of the window, exclusive.
+		 * @return long
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		/**
+		 * Returns the number of sales in the window.
+		 * @return long
+		 */
+		public long getOrders() {
+			return values[ORDERS];
+		}
+
+		/**
+		 * Returns the window's sales scaled to an hour.
+		 * @return double
+		 */
+		public double getOrdersPerHour() {
+			return (double) values[ORDERS] * HOUR / (end - start);
+		}
+
+		/**
+		 * Returns the revenue of the sales in the window.
+		 * @return long
+		 */
+		public long getRevenue() {
+			return values[REVENUE];
+		}
+
+		/**
+		 * Returns the units of coffee used in the window.
+		 * @return long
+		 */
+		public long getAmtCoffee() {
+			return getAmount(Ingredient.COFFEE);
+		}
+
+		/**
+		 * Returns the units of milk used in the window.
+		 * @return long
+		 */
+		public long getAmtMilk() {
+			return getAmount(Ingredient.MILK);
+		}
+
+		/**
+		 * Returns the units of sugar used in the window.
+		 * @return long
+		 */
+		public long getAmtSugar() {
+			return getAmount(Ingredient.SUGAR);
+		}
+
+		/**
+		 * Returns the units of chocolate used in the window.
+		 * @return long
+		 */
+		public long getAmtChocolate() {
+			return getAmount(Ingredient.CHOCOLATE);
+		}
+
+		/**
+		 * Returns the units of the ingredient with the given id used
+		 * in the window, 0 if the ledger does not record it.
+		 * @param ingredient
+		 * @return long
+		 */
+		public long getAmount(int ingredient) {
+			return ingredient >= 0 && AMOUNTS + ingredient < values.length ? values[AMOUNTS + ingredient] : 0;
+		}
+	}
+}
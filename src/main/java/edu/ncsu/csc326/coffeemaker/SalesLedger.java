@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only record of every sale a coffee maker makes, kept
+ * off the Java heap so that hundreds of millions of sales add
+ * nothing to garbage collection.  Add it with
+ * CoffeeMaker.addListener.
+ *
+ * Each sale is a fixed-size record (time in milliseconds, recipe
+ * slot, recipe name id, price, change and the units of each
+ * ingredient used, for as many ingredients as the ledger was
+ * created with) in a direct buffer
+ * segment of SEGMENT_RECORDS records.  Appending allocates nothing
+ * except an id the first time a recipe name is sold: while a
+ * segment fills, the next one is allocated in the background, and
+ * asked for again every PREPARE_RECORDS sales until it is there.  A
+ * sale that finds its segment not yet allocated waits for the
+ * background allocation, or allocates the segment itself.  A
+ * segment that could not be allocated is tried again once
+ * RETRY_NANOS have passed.  A sale that comes after the capacity is
+ * reached, that finds no memory for its segment, or that used an
+ * ingredient the records have no room for, is counted as dropped;
+ * getFailedAllocations tells the first from the second.
+ */
+public class SalesLedger implements CoffeeMakerListener {
+
+	private static final int TIME = 0;
+	private static final int SLOT = 8;
+	private static final int NAME_ID = 12;
+	private static final int PRICE = 16;
+	private static final int CHANGE = 20;
+	/** Offset of the units of the first ingredient */
+	private static final int AMOUNTS = 24;
+
+	private static final int SEGMENT_BITS = 20;
+	/** Records in each off-heap segment */
+	public static final int SEGMENT_RECORDS = 1 << SEGMENT_BITS;
+	/** Sales between checks that the next segment is allocated */
+	static final int PREPARE_RECORDS = 1 << 12;
+	/** Time after a failed allocation before a segment is tried again */
+	static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final long capacity;
+	/** Ingredients each record has units for */
+	private final int ingredients;
+	/** Bytes in each record */
+	private final int recordSize;
+	/** Segments; each is set under the lock before a record goes into it */
+	private final ByteBuffer[] segments;
+	/** Records appended; written under the lock, read without it */
+	private volatile long size;
+	private long dropped;
+	/** Segment being allocated in the background, or -1 */
+	private int allocating = -1;
+	/** Allocations that failed for lack of memory */
+	private long failedAllocations;
+	/** System.nanoTime before which no segment is tried after a failure */
+	private long retryAt;
+	private final Runnable allocator = this::allocateNext;
+
+	private final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<String, Integer>();
+	private final List<String> names = new ArrayList<String>();
+
+	/**
+	 * Creates a ledger that holds up to capacity sales of the four
+	 * standard ingredients.
+	 * @param capacity
+	 */
+	public SalesLedger(long capacity) {
+		this(capacity, Ingredient.STANDARD);
+	}
+
+	/**
+	 * Creates a ledger that holds up to capacity sales, with the
+	 * units of the given number of ingredients, e.g. 
+	 * CoffeeMaker.getIngredientCount.  The first segment is allocated
+	 * here; the others are taken one at a time as sales are added.
+	 * @param capacity
+	 * @param ingredients
+	 */
+	public SalesLedger(long capacity, int ingredients) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("A ledger needs room for at least one sale");
+		}
+		if (ingredients < Ingredient.STANDARD) {
+			throw new IllegalArgumentException("A ledger records at least the standard ingredients");
+		}
+		this.capacity = capacity;
+		this.ingredients = ingredients;
+		this.recordSize = AMOUNTS + 4 * ingredients;
+		segments = new ByteBuffer[(int) ((capacity + SEGMENT_RECORDS - 1) >>> SEGMENT_BITS)];
+		segments[0] = allocate(0);
+	}
+
+	@Override
+	public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+		append(System.currentTimeMillis(), slot, nameId(recipe.getName()), price, amtPaid - price, amounts);
+	}
+
+	/**
+	 * Appends one sale.
+	 * @param time
+	 * @param slot
+	 * @param nameId
+	 * @param price
+	 * @param change
+	 * @param amounts units used, by Ingredient id
+	 */
+	synchronized void append(long time, int slot, int nameId, int price, int change, int... amounts) {
+		long index;
+		ByteBuffer segment;
+		while (true) {
+			// Other sales may go in while this one waits for a segment
+			index = size;
+			if (index == capacity || !fits(amounts)) {
+				dropped++;
+				return;
+			}
+			segment = segments[(int) (index >>> SEGMENT_BITS)];
+			if (segment != null) {
+				break;
+			}
+			if (!fill((int) (index >>> SEGMENT_BITS))) {
+				dropped++;
+				return;
+			}
+		}
+		if ((index & (PREPARE_RECORDS - 1)) == 0) {
+			prepare((int) (index >>> SEGMENT_BITS) + 1);
+		}
+		int at = offset(index);
+		segment.putLong(at + TIME, time);
+		segment.putInt(at + SLOT, slot);
+		segment.putInt(at + NAME_ID, nameId);
+		segment.putInt(at + PRICE, price);
+		segment.putInt(at + CHANGE, change);
+		for (int i = 0; i < ingredients; i++) {
+			segment.putInt(at + AMOUNTS + 4 * i, i < amounts.length ? amounts[i] : 0);
+		}
+		// Publishes the record to readers
+		size = index + 1;
+	}
+
+	/**
+	 * Returns true if the records have room for every ingredient
+	 * the sale used.
+	 */
+	private boolean fits(int[] amounts) {
+		for (int i = ingredients; i < amounts.length; i++) {
+			if (amounts[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts allocating segment k in the background unless it is
+	 * there already, being allocated or past the end, or the last
+	 * allocation failed too recently.  Callers must hold the lock.
+	 */
+	private void prepare(int k) {
+		if (k < segments.length && segments[k] == null && allocating < 0 && !backingOff()) {
+			allocating = k;
+			ForkJoinPool.commonPool().execute(allocator);
+		}
+	}
+
+	/**
+	 * Called by a sale whose segment k is missing.  Waits for the
+	 * background allocation if one is running, otherwise allocates
+	 * segment k here.  Returns false if there is no memory for it,
+	 * and true if the sale should look for its segment again.
+	 * Callers must hold the lock.
+	 */
+	private boolean fill(int k) {
+		if (allocating >= 0) {
+			boolean interrupted = false;
+			while (allocating >= 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// The sale is recorded anyway; the caller sees the interrupt
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return true;
+		}
+		if (backingOff()) {
+			return false;
+		}
+		try {
+			segments[k] = allocate(k);
+			return true;
+		} catch (OutOfMemoryError e) {
+			failed();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if an allocation failed less than RETRY_NANOS
+	 * ago.  Callers must hold the lock.
+	 */
+	private boolean backingOff() {
+		return failedAllocations > 0 && retryAt - System.nanoTime() > 0;
+	}
+
+	/**
+	 * Counts a failed allocation.  Callers must hold the lock.
+	 */
+	private void failed() {
+		failedAllocations++;
+		retryAt = System.nanoTime() + RETRY_NANOS;
+	}
+
+	/**
+	 * Allocates the segment asked for by prepare, outside the lock
+	 * so that sales carry on meanwhile.
+	 */
+	private void allocateNext() {
+		int k;
+		synchronized (this) {
+			k = allocating;
+		}
+		ByteBuffer segment = null;
+		try {
+			segment = allocate(k);
+		} catch (OutOfMemoryError e) {
+			// Over the direct memory limit; tried again after RETRY_NANOS
+		}
+		synchronized (this) {
+			if (segment != null) {
+				segments[k] = segment;
+			} else {
+				failed();
+			}
+			allocating = -1;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until no segment is being allocated.
+	 * @throws InterruptedException
+	 */
+	synchronized void awaitAllocation() throws InterruptedException {
+		while (allocating >= 0) {
+			wait();
+		}
+	}
+
+	/**
+	 * Allocates segment k, which is smaller than the others if it
+	 * is the last one.
+	 */
+	private ByteBuffer allocate(int k) {
+		long records = Math.min(SEGMENT_RECORDS, capacity - ((long) k << SEGMENT_BITS));
+		return ByteBuffer.allocateDirect((int) records * recordSize);
+	}
+
+	/**
+	 * Returns the id of a recipe name, giving it the next id if it
+	 * has not been sold before.
+	 */
+	int nameId(String name) {
+		Integer id = nameIds.get(name);
+		if (id != null) {
+			return id;
+		}
+		synchronized (names) {
+			id = nameIds.get(name);
+			if (id == null) {
+				id = names.size();
+				names.add(name);
+				nameIds.put(name, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the number of sales recorded.  Records below this
+	 * index can be read while sales carry on.
+	 * @return long
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of sales not recorded because the ledger
+	 * was full, there was no memory for its segment or the sale used
+	 * an ingredient the records have no room for.
+	 * @return long
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Returns the number of times a segment could not be allocated
+	 * for lack of direct memory.  Sales are dropped while none can
+	 * be.
+	 * @return long
+	 */
+	public synchronized long getFailedAllocations() {
+		return failedAllocations;
+	}
+
+	/**
+	 * Returns the time of sale i, in milliseconds since the epoch.
+	 * @param i
+	 * @return long
+	 */
+	public long getTime(long i) {
+		return segment(i).getLong(offset(i) + TIME);
+	}
+
+	/**
+	 * Returns the recipe slot of sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getSlot(long i) {
+		return segment(i).getInt(offset(i) + SLOT);
+	}
+
+	/**
+	 * Returns the recipe name id of sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getNameId(long i) {
+		return segment(i).getInt(offset(i) + NAME_ID);
+	}
+
+	/**
+	 * Returns the price paid for sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getPrice(long i) {
+		return segment(i).getInt(offset(i) + PRICE);
+	}
+
+	/**
+	 * Returns the change given for sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getChange(long i) {
+		return segment(i).getInt(offset(i) + CHANGE);
+	}
+
+	/**
+	 * Returns the units of coffee used by sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getAmtCoffee(long i) {
+		return getAmount(i, Ingredient.COFFEE);
+	}
+
+	/**
+	 * Returns the units of milk used by sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getAmtMilk(long i) {
+		return getAmount(i, Ingredient.MILK);
+	}
+
+	/**
+	 * Returns the units of sugar used by sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getAmtSugar(long i) {
+		return getAmount(i, Ingredient.SUGAR);
+	}
+
+	/**
+	 * Returns the units of chocolate used by sale i.
+	 * @param i
+	 * @return int
+	 */
+	public int getAmtChocolate(long i) {
+		return getAmount(i, Ingredient.CHOCOLATE);
+	}
+
+	/**
+	 * Returns the units of the ingredient with the given id used
+	 * by sale i.
+	 * @param i
+	 * @param ingredient
+	 * @return int
+	 */
+	public int getAmount(long i, int ingredient) {
+		if (ingredient < 0 || ingredient >= ingredients) {
+			throw new IndexOutOfBoundsException("The ledger has no units of ingredient " + ingredient);
+		}
+		return segment(i).getInt(offset(i) + AMOUNTS + 4 * ingredient);
+	}
+
+	/**
+	 * Returns the number of ingredients each sale has units for.
+	 * @return int
+	 */
+	public int getIngredientCount() {
+		return ingredients;
+	}
+
+	/**
+	 * Returns the number of recipe names given an id so far.
+	 * @return int
+	 */
+	public int getNameCount() {
+		synchronized (names) {
+			return names.size();
+		}
+	}
+
+	/**
+	 * Returns the recipe name with the given id.
+	 * @param nameId
+	 * @return String
+	 */
+	public String getName(int nameId) {
+		synchronized (names) {
+			return names.get(nameId);
+		}
+	}
+
+	/**
+	 * Returns the segment holding record i, which must be below
+	 * size.
+	 */
+	private ByteBuffer segment(long i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Sale " + i + " is not in the ledger");
+		}
+		return segments[(int) (i >>> SEGMENT_BITS)];
+	}
+
+	private int offset(long i) {
+		return (int) (i & (SEGMENT_RECORDS - 1)) * recordSize;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * How many more of each recipe a coffee maker can make from its
+ * current stock.  The table is tied to one recipe book and one
+ * inventory.  The table is rebuilt when it is read after the menu
+ * or the inventory version has changed, so purchases pay nothing
+ * for it.  Reading a current table takes no lock; a rebuild copies
+ * the stock under the inventory's lock, once per change, since a
+ * change can span several amounts.
+ *
+ * A rebuild starts from the previous table and only recomputes the
+ * slots whose recipe was replaced or that use an ingredient whose
+ * level moved.  Recipes should be changed through the book, which
+ * replaces them, rather than modified in place.
+ */
+final class ServingsTable {
+
+	/** Servings of a recipe that uses no ingredients */
+	static final int UNLIMITED = Integer.MAX_VALUE;
+
+	private final RecipeBook recipeBook;
+	private final Inventory inventory;
+	/** Latest table; a stale one is replaced by whichever reader notices */
+	private volatile Table table;
+
+	ServingsTable(RecipeBook recipeBook, Inventory inventory) {
+		this.recipeBook = recipeBook;
+		this.inventory = inventory;
+	}
+
+	/**
+	 * Returns the servings left of each slot.  The array is shared
+	 * and must not be modified.  Takes the inventory's lock only if
+	 * the stock has changed since the last read.
+	 * @return int []
+	 */
+	int[] getServings() {
+		RecipeMenu menu = recipeBook.getMenu();
+		long version = inventory.getVersion();
+		Table current = table;
+		if (current == null || current.menu != menu || current.version != version) {
+			current = new Table(current, menu, version, inventory.getStock());
+			table = current;
+		}
+		return current.servings;
+	}
+
+	/**
+	 * Returns the servings that can be made of a recipe needing
+	 * the given amounts from the given stock, both by ingredient id.
+	 */
+	static int servings(int[] amounts, int[] stock) {
+		int servings = UNLIMITED;
+		for (int i = 0; i < amounts.length; i++) {
+			if (amounts[i] > 0) {
+				servings = Math.min(servings, i < stock.length ? stock[i] / amounts[i] : 0);
+			}
+		}
+		return servings;
+	}
+
+	/**
+	 * Servings for one menu and one version of the stock.
+	 */
+	private static final class Table {
+		final RecipeMenu menu;
+		final long version;
+		final int[] stock;
+		final int[] servings;
+
+		Table(Table previous, RecipeMenu menu, long version, int[] stock) {
+			this.menu = menu;
+			this.version = version;
+			this.stock = stock;
+			Recipe[] recipes = menu.recipes();
+			servings = new int[recipes.length];
+			Recipe[] before = previous != null ? previous.menu.recipes() : new Recipe[0];
+			boolean[] moved = new boolean[stock.length];
+			for (int i = 0; i < stock.length; i++) {
+				moved[i] = previous == null || stock[i] != previous.stock[i];
+			}
+			for (int slot = 0; slot < recipes.length; slot++) {
+				Recipe r = recipes[slot];
+				if (r == null) {
+					continue;
+				}
+				int[] amounts = r.amounts();
+				if (slot < before.length && before[slot] == r && !uses(amounts, moved)) {
+					servings[slot] = previous.servings[slot];
+				} else {
+					servings[slot] = servings(amounts, stock);
+				}
+			}
+		}
+
+		/**
+		 * Returns true if the amounts use any ingredient that moved.
+		 */
+		private static boolean uses(int[] amounts, boolean[] moved) {
+			for (int i = 0; i < Math.min(amounts.length, moved.length); i++) {
+				if (moved[i] && amounts[i] > 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
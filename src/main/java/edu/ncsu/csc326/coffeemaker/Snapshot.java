@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * The recipes and inventory levels of a coffee maker at one point
+ * in its Journal.  A snapshot is taken with CoffeeMaker.snapshot
+ * while purchases carry on, written to a compact binary file
+ * (a header with the level of every Ingredient id, the slot of
+ * each recipe and a RecipeCodec block), and on restart loaded
+ * straight into a RecipeBook and Inventory before the rest of the
+ * journal is replayed.  Files written before the levels were
+ * counted, which hold the four standard levels, are still read.
+ */
+public final class Snapshot {
+
+	/** "CMSN", to recognise snapshot files with the four standard levels */
+	private static final int MAGIC_STANDARD = 0x434D534E;
+	/** "CMS2", to recognise snapshot files with a count of levels */
+	private static final int MAGIC = 0x434D5332;
+	/** Bytes before the levels */
+	private static final int HEADER_SIZE = 4 + 8 + 4;
+
+	private final long journalPosition;
+	/** Inventory levels, by Ingredient id */
+	private final int[] levels;
+	/** Recipes by slot; shared with a RecipeMenu, so never modified */
+	private final Recipe[] recipes;
+	private final int recipeCount;
+
+	Snapshot(long journalPosition, int[] levels, Recipe[] recipes, int recipeCount) {
+		this.journalPosition = journalPosition;
+		this.levels = levels;
+		this.recipes = recipes;
+		this.recipeCount = recipeCount;
+	}
+
+	/**
+	 * Returns the journal offset the snapshot was taken at; only
+	 * the records after it need to be replayed.
+	 * @return long
+	 */
+	public long getJournalPosition() {
+		return journalPosition;
+	}
+
+	/**
+	 * Returns the number of recipes in the snapshot.
+	 * @return int
+	 */
+	public int getRecipeCount() {
+		return recipeCount;
+	}
+
+	/**
+	 * Loads the snapshot into an empty recipe book and sets the
+	 * inventory to its levels.  A snapshot taken while a purchase
+	 * was journaled before the restock it used can hold a negative
+	 * level; such a snapshot is only meaningful with the rest of
+	 * its journal, through Journal.replay, and is rejected here.
+	 * @param book
+	 * @param inventory
+	 * @throws IOException if a level is negative, or the inventory
+	 * does not stock an ingredient the snapshot holds
+	 */
+	public void restore(RecipeBook book, Inventory inventory) throws IOException {
+		int n = inventory.getIngredientCount();
+		for (int i = 0; i < levels.length; i++) {
+			if (i >= n && levels[i] != 0) {
+				throw new IOException("The snapshot holds units of ingredient " + i 
+						+ ", which the inventory does not stock");
+			}
+			if (levels[i] < 0) {
+				throw new IOException("The snapshot holds " + levels[i] + " units of " 
+						+ inventory.getIngredientName(i).toLowerCase());
+			}
+		}
+		load(book);
+		for (int i = 0; i < Math.min(n, levels.length); i++) {
+			inventory.setStock(i, levels[i]);
+		}
+	}
+
+	/**
+	 * Loads the snapshot's recipes into an empty recipe book.
+	 * @param book
+	 */
+	void load(RecipeBook book) {
+		book.load(recipes);
+	}
+
+	/**
+	 * Returns the inventory levels, by Ingredient id.
+	 * @return int []
+	 */
+	int[] levels() {
+		return levels.clone();
+	}
+
+	/**
+	 * Writes the snapshot to the given file.  It is written to a
+	 * temporary file first and moved into place, so the file always
+	 * holds a whole snapshot.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		Recipe[] used = new Recipe[recipeCount];
+		int[] slots = new int[recipeCount];
+		int count = 0;
+		for (int i = 0; i < recipes.length && count < recipeCount; i++) {
+			if (recipes[i] != null) {
+				used[count] = recipes[i];
+				slots[count++] = i;
+			}
+		}
+		ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + 4 * levels.length + 4 * 2 
+				+ 4 * recipeCount + RecipeCodec.encodedSize(used));
+		out.putInt(MAGIC).putLong(journalPosition).putInt(levels.length);
+		out.asIntBuffer().put(levels);
+		out.position(out.position() + 4 * levels.length);
+		out.putInt(recipes.length).putInt(recipeCount);
+		out.asIntBuffer().put(slots);
+		out.position(out.position() + 4 * recipeCount);
+		RecipeCodec.encode(used, out);
+		out.flip();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			channel.force(false);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot written by write.
+	 * @param file
+	 * @return Snapshot
+	 * @throws IOException
+	 */
+	public static Snapshot read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int magic = in.remaining() < HEADER_SIZE ? 0 : in.getInt();
+			if (magic != MAGIC && magic != MAGIC_STANDARD) {
+				throw new IOException(file + " is not a coffee maker snapshot");
+			}
+			long journalPosition = in.getLong();
+			int[] levels = new int[magic == MAGIC ? in.getInt() : Ingredient.STANDARD];
+			in.asIntBuffer().get(levels);
+			in.position(in.position() + 4 * levels.length);
+			Recipe[] recipes = new Recipe[in.getInt()];
+			int recipeCount = in.getInt();
+			int[] slots = new int[recipeCount];
+			in.asIntBuffer().get(slots);
+			in.position(in.position() + 4 * recipeCount);
+			Recipe[] used = RecipeCodec.decode(in);
+			for (int i = 0; i < recipeCount; i++) {
+				recipes[slots[i]] = used[i];
+			}
+			return new Snapshot(journalPosition, levels, recipes, recipeCount);
+		} catch (RecipeException | RuntimeException e) {
+			throw new IOException(file + " holds a damaged snapshot", e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the coffee maker to the file once every
+	 * period.  If a snapshot cannot be written the task stops, and
+	 * the returned future fails with an UncheckedIOException.
+	 * @param executor
+	 * @param coffeeMaker
+	 * @param journal
+	 * @param file
+	 * @param period
+	 * @param unit
+	 * @return ScheduledFuture
+	 */
+	public static ScheduledFuture<?> schedule(ScheduledExecutorService executor, final CoffeeMaker coffeeMaker, 
+			final Journal journal, final Path file, long period, TimeUnit unit) {
+		return executor.scheduleAtFixedRate(() -> {
+			try {
+				coffeeMaker.snapshot(journal).write(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, period, period, unit);
+	}
+}
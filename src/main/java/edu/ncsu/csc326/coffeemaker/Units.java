@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker;
+
+/**
+ * Parses the unit and price amounts typed into the coffee maker
+ * without throwing, so malformed input costs no allocation.
+ */
+public final class Units {
+
+	/** Returned by parse for anything that is not a non-negative int */
+	public static final int INVALID = -1;
+
+	private Units() {
+	}
+
+	/**
+	 * Returns the value of a decimal integer made of ASCII digits
+	 * with an optional sign, or INVALID if the string is null,
+	 * malformed, negative or does not fit in an int.
+	 * @param units
+	 * @return int
+	 */
+	public static int parse(String units) {
+		if (units == null) {
+			return INVALID;
+		}
+		int length = units.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (units.charAt(0) == '+' || units.charAt(0) == '-')) {
+			negative = units.charAt(0) == '-';
+			i = 1;
+		}
+		if (i == length) {
+			return INVALID;
+		}
+		int value = 0;
+		for (; i < length; i++) {
+			int digit = units.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+				return INVALID;
+			}
+			value = value * 10 + digit;
+		}
+		// "-0" is zero, as it is for Integer.parseInt
+		return negative && value != 0 ? INVALID : value;
+	}
+}
@@ -20,5 +20,18 @@ public class InventoryException extends Exception {
 	public InventoryException(String msg) {
 		super(msg);
 	}
+	
+	/**
+	 * Creates an exception that can optionally skip filling in
+	 * its stack trace.  Without a stack trace and with suppression
+	 * disabled the exception is immutable, so one instance can be
+	 * created up front and thrown for every occurrence of an
+	 * expected validation failure.
+	 * @param msg
+	 * @param writableStackTrace
+	 */
+	public InventoryException(String msg, boolean writableStackTrace) {
+		super(msg, null, false, writableStackTrace);
+	}
 
 }
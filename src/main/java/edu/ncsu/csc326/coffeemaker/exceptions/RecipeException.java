@@ -20,5 +20,18 @@ private static final long serialVersionUID = 1L;
 	public RecipeException(String msg) {
 		super(msg);
 	}
+	
+	/**
+	 * Creates an exception that can optionally skip filling in
+	 * its stack trace.  Without a stack trace and with suppression
+	 * disabled the exception is immutable, so one instance can be
+	 * created up front and thrown for every occurrence of an
+	 * expected validation failure.
+	 * @param msg
+	 * @param writableStackTrace
+	 */
+	public RecipeException(String msg, boolean writableStackTrace) {
+		super(msg, null, false, writableStackTrace);
+	}
 
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.ncsu.csc326.coffeemaker.CoffeeMaker;
+
+/**
+ * Opens many kiosk connections to an OrderServer, sends MAKE
+ * requests as fast as the server answers them and reports the
+ * number of orders per second.
+ */
+public class LoadGenerator {
+
+	private final InetSocketAddress server;
+	private final int connections;
+
+	/**
+	 * Creates a load generator for the server at the given address.
+	 * @param server
+	 * @param connections
+	 */
+	public LoadGenerator(InetSocketAddress server, int connections) {
+		this.server = server;
+		this.connections = connections;
+	}
+
+	/**
+	 * Adds a recipe that needs no ingredients, so the machine never
+	 * runs out, then buys it from every connection for the given
+	 * time.  Returns the orders answered per second.
+	 * @param millis
+	 * @return double
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public double run(long millis) throws IOException, InterruptedException {
+		try (Socket setup = new Socket(server.getAddress(), server.getPort())) {
+			Writer out = writer(setup);
+			BufferedReader in = reader(setup);
+			// Fails harmlessly if an earlier run already added it
+			request(out, in, "ADD 10 0 0 0 0 Hot Water");
+			String menu = request(out, in, "MENU");
+			final String order = "MAKE " + slotOf(menu, "Hot Water") + " 50";
+
+			final AtomicLong answered = new AtomicLong();
+			final long deadline = System.nanoTime() + millis * 1000000L;
+			Thread[] kiosks = new Thread[connections];
+			final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+			for (int i = 0; i < kiosks.length; i++) {
+				kiosks[i] = new Thread(() -> {
+					try (Socket socket = new Socket(server.getAddress(), server.getPort())) {
+						Writer kioskOut = writer(socket);
+						BufferedReader kioskIn = reader(socket);
+						long count = 0;
+						while (System.nanoTime() < deadline && request(kioskOut, kioskIn, order) != null) {
+							count++;
+						}
+						answered.addAndGet(count);
+					} catch (IOException e) {
+						failure.compareAndSet(null, e);
+					}
+				}, "kiosk-" + i);
+				kiosks[i].start();
+			}
+			long start = System.nanoTime();
+			for (Thread kiosk : kiosks) {
+				kiosk.join();
+			}
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+			return answered.get() * 1e9 / (System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Sends one request line and waits for its response line,
+	 * which is null if the server closed the connection.
+	 */
+	private static String request(Writer out, BufferedReader in, String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+		out.flush();
+		return in.readLine();
+	}
+
+	private static Writer writer(Socket socket) throws IOException {
+		return new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+	}
+
+	private static BufferedReader reader(Socket socket) throws IOException {
+		return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Finds a recipe's slot in a MENU response.
+	 */
+	private static int slotOf(String menu, String name) throws IOException {
+		for (String entry : menu.substring(3).split("\\|")) {
+			int separator = entry.indexOf('=');
+			if (separator > 0 && entry.substring(separator + 1).equals(name)) {
+				return Integer.parseInt(entry.substring(0, separator));
+			}
+		}
+		throw new IOException("The server could not add " + name);
+	}
+
+	/**
+	 * Runs the load generator against a server on a loopback port.
+	 * With no port, it starts its own server for a new coffee maker.
+	 * @param args [connections [seconds [port]]]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		OrderServer local = null;
+		InetSocketAddress address;
+		if (args.length > 2) {
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[2]));
+		} else {
+			local = new OrderServer(new CoffeeMaker(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			local.start();
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), local.getPort());
+		}
+		try {
+			double rate = new LoadGenerator(address, connections).run(seconds * 1000L);
+			System.out.printf("%d connections: %.0f orders/second%n", connections, rate);
+		} finally {
+			if (local != null) {
+				local.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2009,  Sarah Heckman, Laurie Williams, Dright Ho
+ * All Rights Reserved.
+ * 
+ * Permission has been explicitly granted to the University of Minnesota 
+ * Software Engineering Center to use and distribute this source for 
+ * educational purposes, including delivering online education through
+ * Coursera or other entities.  
+ * 
+ * No warranty is given regarding this software, including warranties as
+ * to the correctness or completeness of this software, including 
+ * fitness for purpose.
+ */
+package edu.ncsu.csc326.coffeemaker.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import edu.ncsu.csc326.coffeemaker.CoffeeMaker;
+import edu.ncsu.csc326.coffeemaker.Recipe;
+import edu.ncsu.csc326.coffeemaker.Units;
+import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * A non-blocking server that lets many kiosks drive one coffee
+ * maker over TCP.  A single selector thread serves every
+ * connection.  Each request is one line of text and gets exactly
+ * one line back, starting with OK or ERR:
+ *
+ * <pre>
+ * MAKE recipe paid                     OK change
+ * ADDINV coffee milk sugar chocolate   OK
+ * INV                                  OK Coffee: 15; Milk: 15; Sugar: 15; Chocolate: 15
+ * MENU                                 OK 0=Coffee|2=Mocha
+ * ADD price coffee milk sugar chocolate name
+ *                                      OK
+ * EDIT recipe price coffee milk sugar chocolate
+ *                                      OK name
+ * DEL recipe                           OK name
+ * QUIT                                 (connection is closed)
+ * </pre>
+ *
+ * Recipes are numbered from 0, as in CoffeeMaker.  A kiosk may
+ * send requests before reading earlier responses, but the server
+ * stops reading from it while MAX_PENDING bytes of its responses
+ * are unsent, and until the socket has taken all of them.
+ */
+public class OrderServer implements Closeable {
+
+	/** Longest request line accepted, in bytes */
+	private static final int MAX_LINE = 1024;
+	/** Unsent response bytes at which a connection's requests wait */
+	private static final int MAX_PENDING = 64 * 1024;
+
+	private final CoffeeMaker coffeeMaker;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final Thread selectorThread;
+	private volatile boolean running;
+
+	/**
+	 * Opens a server for the coffee maker on the given address.
+	 * Use port 0 to pick any free port.  Call start to begin
+	 * accepting kiosks.
+	 * @param coffeeMaker
+	 * @param address
+	 * @throws IOException
+	 */
+	public OrderServer(CoffeeMaker coffeeMaker, InetSocketAddress address) throws IOException {
+		this.coffeeMaker = coffeeMaker;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		selectorThread = new Thread(this::serve, "coffee-maker-server");
+	}
+
+	/**
+	 * Starts the selector thread.
+	 */
+	public void start() {
+		running = true;
+		selectorThread.start();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return int
+	 * @throws IOException
+	 */
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Stops the selector thread and closes every connection.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+	}
+
+	/**
+	 * Selector loop.
+	 */
+	private void serve() {
+		while (running) {
+			try {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							if (key.isReadable()) {
+								read(key);
+							}
+							if (key.isValid() && key.isWritable()) {
+								write(key);
+							}
+						}
+					} catch (IOException e) {
+						key.cancel();
+						key.channel().close();
+					} catch (RuntimeException e) {
+						// A failure in the coffee maker or a listener only
+						// drops the kiosk whose request hit it
+						fail(key);
+					}
+				}
+			} catch (IOException e) {
+				// A broken selector cannot serve anyone
+				running = false;
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel != null) {
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new Connection());
+		}
+	}
+
+	private void read(SelectionKey key) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		if (channel.read(connection.in) < 0) {
+			channel.close();
+			return;
+		}
+		process(key);
+	}
+
+	/**
+	 * Handles the complete request lines the connection has read,
+	 * stopping early once MAX_PENDING bytes of responses are
+	 * waiting, and sends the responses.
+	 */
+	private void process(SelectionKey key) throws IOException {
+		Connection connection = (Connection) key.attachment();
+		ByteBuffer in = connection.in;
+		in.flip();
+		int lineStart = in.position();
+		connection.backlog = false;
+		for (int i = in.position(); i < in.limit(); i++) {
+			if (in.get(i) == '\n') {
+				String line = new String(in.array(), lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+				lineStart = i + 1;
+				if ("QUIT".equals(line)) {
+					connection.closeAfterWrite = true;
+					break;
+				}
+				connection.reply(handle(line));
+				if (connection.out.position() >= MAX_PENDING) {
+					// The rest waits until the kiosk has read these
+					connection.backlog = true;
+					break;
+				}
+			}
+		}
+		in.position(lineStart);
+		in.compact();
+		if (!connection.backlog && !in.hasRemaining()) {
+			in.clear();
+			connection.reply("ERR line too long");
+			connection.closeAfterWrite = true;
+		}
+		write(key);
+	}
+
+	/**
+	 * Sends what the connection has buffered and an error, as far
+	 * as the socket takes them without blocking, and closes it.
+	 */
+	private void fail(SelectionKey key) {
+		key.cancel();
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (connection != null) {
+				connection.reply("ERR internal error");
+				connection.out.flip();
+				((SocketChannel) key.channel()).write(connection.out);
+			}
+		} catch (IOException e) {
+			// The kiosk is dropped either way
+		}
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// Already broken
+		}
+	}
+
+	private void write(SelectionKey key) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		ByteBuffer out = connection.out;
+		out.flip();
+		channel.write(out);
+		out.compact();
+		if (out.position() > 0) {
+			// No more requests are read until the kiosk takes these
+			key.interestOps(SelectionKey.OP_WRITE);
+		} else if (connection.closeAfterWrite) {
+			channel.close();
+		} else if (connection.backlog) {
+			process(key);
+		} else {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Runs one request against the coffee maker and returns the
+	 * response line.
+	 * @param line
+	 * @return String
+	 */
+	String handle(String line) {
+		String[] words = line.split(" ");
+		try {
+			switch (words[0]) {
+			case "MAKE":
+				expect(words, 3);
+				return "OK " + coffeeMaker.makeCoffee(index(words[1]), units(words[2]));
+			case "ADDINV":
+				expect(words, 5);
+				coffeeMaker.addInventory(words[1], words[2], words[3], words[4]);
+				return "OK";
+			case "INV":
+				return "OK " + coffeeMaker.checkInventory().trim().replace("\n", "; ");
+			case "MENU":
+				return "OK " + menu();
+			case "ADD":
+				if (words.length < 7) {
+					return "ERR usage: ADD price coffee milk sugar chocolate name";
+				}
+				Recipe added = recipe(words, 1);
+				added.setName(line.split(" ", 7)[6]);
+				return coffeeMaker.addRecipe(added) ? "OK" : "ERR recipe could not be added";
+			case "EDIT":
+				expect(words, 7);
+				String edited = coffeeMaker.editRecipe(index(words[1]), recipe(words, 2));
+				return edited != null ? "OK " + edited : "ERR no such recipe";
+			case "DEL":
+				expect(words, 2);
+				String deleted = coffeeMaker.deleteRecipe(index(words[1]));
+				return deleted != null ? "OK " + deleted : "ERR no such recipe";
+			default:
+				return "ERR unknown command";
+			}
+		} catch (InventoryException e) {
+			return "ERR " + e.getMessage();
+		} catch (RecipeException e) {
+			return "ERR " + e.getMessage();
+		} catch (IllegalArgumentException e) {
+			return "ERR " + e.getMessage();
+		}
+	}
+
+	private String menu() {
+		StringBuilder buf = new StringBuilder();
+		Recipe[] recipes = coffeeMaker.getRecipes();
+		for (int i = 0; i < recipes.length; i++) {
+			if (recipes[i] != null) {
+				if (buf.length() > 0) {
+					buf.append('|');
+				}
+				buf.append(i).append('=').append(recipes[i].getName());
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Builds a recipe from the price and the four amounts that
+	 * follow it, starting at words[priceWord].
+	 */
+	private static Recipe recipe(String[] words, int priceWord) throws RecipeException {
+		Recipe r = new Recipe();
+		r.setPrice(words[priceWord]);
+		r.setAmtCoffee(words[priceWord + 1]);
+		r.setAmtMilk(words[priceWord + 2]);
+		r.setAmtSugar(words[priceWord + 3]);
+		r.setAmtChocolate(words[priceWord + 4]);
+		return r;
+	}
+
+	private static void expect(String[] words, int count) {
+		if (words.length != count) {
+			throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " arguments");
+		}
+	}
+
+	private static int index(String word) {
+		// Out-of-range indexes are passed through so CoffeeMaker can reject them
+		int index = Units.parse(word);
+		return index == Units.INVALID ? -1 : index;
+	}
+
+	private static int units(String word) {
+		int units = Units.parse(word);
+		if (units == Units.INVALID) {
+			throw new IllegalArgumentException("Amount must be a positive integer");
+		}
+		return units;
+	}
+
+	/**
+	 * Buffers for one kiosk connection.
+	 */
+	private static class Connection {
+		final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+		ByteBuffer out = ByteBuffer.allocate(MAX_LINE);
+		boolean closeAfterWrite;
+		/** Whether in holds request lines left for when out drains */
+		boolean backlog;
+
+		void reply(String line) {
+			byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+			if (out.remaining() < bytes.length) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length));
+				out.flip();
+				bigger.put(out);
+				out = bigger;
+			}
+			out.put(bytes);
+		}
+	}
+
+	/**
+	 * Starts a server for a new coffee maker on the loopback
+	 * interface.
+	 * @param args the port to listen on, 7070 by default
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+		OrderServer server = new OrderServer(new CoffeeMaker(),
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.start();
+		System.out.println("CoffeeMaker order server listening on port " + server.getPort());
+	}
+}
@@ -0,0 +1,40 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the CoffeeMaker suite with its test methods in parallel.
+ * Each test builds its own machines, so nothing may leak
+ * between them.
+ */
+public class CoffeeMakerParallelTest {
+
+    /**
+     * Every CoffeeMakerTest method should pass when run concurrently
+     * with the others.
+     */
+    @Test
+    public void testSuiteRunsInParallel() {
+        Result result = JUnitCore.runClasses(ParallelComputer.methods(), CoffeeMakerTest.class);
+        assertTrue("Parallel run failed: " + result.getFailures(), result.wasSuccessful());
+    }
+
+    /**
+     * Two machines in the same JVM must not share an inventory.
+     * Expected: restocking one leaves the other at the default 15.
+     */
+    @Test
+    public void testMachinesHaveIndependentInventories() throws Exception {
+        CoffeeMaker first = new CoffeeMaker();
+        first.addInventory("5", "0", "0", "0");
+        CoffeeMaker second = new CoffeeMaker();
+
+        assertTrue(first.checkInventory().contains("Coffee: 20"));
+        assertTrue(second.checkInventory().contains("Coffee: 15"));
+    }
+}
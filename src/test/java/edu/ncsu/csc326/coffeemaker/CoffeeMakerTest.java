@@ -1,5 +1,9 @@
 package edu.ncsu.csc326.coffeemaker;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
 import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
 import org.junit.Before;
@@ -282,6 +286,39 @@ public class CoffeeMakerTest {
         cm.addInventory("-1", "0", "0", "0");
     }
 
+    /**
+     * A restock with one bad amount must not change any stock.
+     * Expected: coffee is listed first and valid, but stays at 15.
+     */
+    @Test
+    public void testAddInventoryIsAllOrNothing() {
+        CoffeeMaker cm = new CoffeeMaker();
+        try {
+            cm.addInventory("5", "5", "lots", "5");
+            fail("Non-numeric sugar should be rejected");
+        } catch (InventoryException e) {
+            assertEquals("Units of sugar must be a positive integer", e.getMessage());
+        }
+        try {
+            cm.addInventory(5, 5, 5, -5);
+            fail("Negative chocolate should be rejected");
+        } catch (InventoryException e) {
+            assertEquals("Units of chocolate must be a positive integer", e.getMessage());
+        }
+        assertEquals(new Inventory().toString(), cm.checkInventory());
+    }
+
+    @Test
+    public void testAddInventoryInts() throws InventoryException {
+        CoffeeMaker cm = new CoffeeMaker(new RecipeBook(), new LockFreeInventory());
+        cm.addInventory(3, 2, 1, 4);
+        String _inventory = cm.checkInventory();
+        assertTrue(_inventory.contains("Coffee: 18"));
+        assertTrue(_inventory.contains("Milk: 17"));
+        assertTrue(_inventory.contains("Sugar: 16"));
+        assertTrue(_inventory.contains("Chocolate: 19"));
+    }
+
     @Test
     public void testMakeCoffeeSuccessAndInventoryReduction() throws Exception {
         CoffeeMaker cm = new CoffeeMaker();
@@ -338,6 +375,85 @@ public class CoffeeMakerTest {
     }
 
 
+    /**
+     * A batch must give the same change as one makeCoffee call per order.
+     * Expected: five Coffees use up all 15 coffee units, so the Mocha
+     * cannot be made; the Latte is underpaid and index 7 does not exist.
+     */
+    @Test
+    public void testMakeCoffeeBatchMatchesSequentialCalls() {
+        int[] indexes = {0, 0, 0, 0, 0, 1, 7, 2};
+        int[] paid = {60, 50, 50, 50, 50, 20, 10, 100};
+        PurchaseOutcome[] outcomes = new PurchaseOutcome[indexes.length];
+
+        int[] change = coffeeMaker.makeCoffeeBatch(indexes, paid, outcomes);
+
+        CoffeeMaker sequential = new CoffeeMaker();
+        sequential.addRecipe(r1);
+        sequential.addRecipe(r2);
+        sequential.addRecipe(r3);
+        for (int i = 0; i < indexes.length; i++) {
+            assertEquals("Order " + i, sequential.makeCoffee(indexes[i], paid[i]), change[i]);
+        }
+        assertEquals(sequential.checkInventory(), coffeeMaker.checkInventory());
+
+        assertEquals(PurchaseOutcome.PURCHASED, outcomes[0]);
+        assertEquals(PurchaseOutcome.PURCHASED, outcomes[4]);
+        assertEquals(PurchaseOutcome.INSUFFICIENT_FUNDS, outcomes[5]);
+        assertEquals(PurchaseOutcome.INVALID_RECIPE, outcomes[6]);
+        assertEquals(PurchaseOutcome.INSUFFICIENT_INVENTORY, outcomes[7]);
+    }
+
+    /**
+     * The lock-free inventory applies a batch with the same results.
+     */
+    @Test
+    public void testMakeCoffeeBatchLockFree() {
+        CoffeeMaker cm = new CoffeeMaker(new RecipeBook(), new LockFreeInventory());
+        cm.addRecipe(r1);
+        cm.addRecipe(r3);
+        int[] change = cm.makeCoffeeBatch(new int[] {0, 1, 0, 1, 0, 1}, new int[] {50, 100, 60, 100, 50, 120});
+        assertArrayEquals(new int[] {0, 0, 10, 0, 0, 120}, change);
+        assertTrue(cm.checkInventory().contains("Coffee: 0"));
+        assertTrue(cm.checkInventory().contains("Chocolate: 11"));
+    }
+
+    /**
+     * A listener that throws, e.g. a closed Journal, does not undo
+     * or fail a purchase that has taken its stock.
+     * Expected: every customer gets their change, later listeners
+     * still hear about each sale, and each failed call is counted.
+     */
+    @Test
+    public void testFailingListenerKeepsPurchase() {
+        final int[] sold = new int[1];
+        coffeeMaker.addListener(new CoffeeMakerListener() {
+            @Override
+            public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+                throw new IllegalStateException("The journal is closed");
+            }
+
+            @Override
+            public void orderCompleted(int slot, PurchaseOutcome outcome, long elapsedNanos) {
+                throw new IllegalStateException("The journal is closed");
+            }
+        });
+        coffeeMaker.addListener(new CoffeeMakerListener() {
+            @Override
+            public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+                sold[0]++;
+            }
+        });
+        assertEquals(10, coffeeMaker.makeCoffee(0, 60));
+        assertArrayEquals(new int[] {0, 5}, coffeeMaker.makeCoffeeBatch(new int[] {0, 1}, new int[] {50, 80}));
+        long reservation = coffeeMaker.reserveCoffee(0, 1, TimeUnit.MINUTES);
+        assertEquals(0, coffeeMaker.makeReservedCoffee(reservation, 50));
+
+        assertEquals(4, sold[0]);
+        assertEquals(8, coffeeMaker.getListenerFailures());
+        assertTrue(coffeeMaker.checkInventory().startsWith("Coffee: 4\n"));
+    }
+
 
 // ========================
 // Inventory unit tests
@@ -527,6 +643,48 @@ public class CoffeeMakerTest {
         assertFalse("Recipes with different names should not be equal", recipe.equals(other));
     }
 
+    /**
+     * Rejected input reuses one exception without a stack trace.
+     * Expected: the same instance, with the usual message, each time.
+     */
+    @Test
+    public void testValidationFailuresArePreallocated() {
+        RecipeException first = null;
+        RecipeException second = null;
+        try {
+            recipe.setPrice("ten");
+        } catch (RecipeException e) {
+            first = e;
+        }
+        try {
+            recipe.setPrice("-10");
+        } catch (RecipeException e) {
+            second = e;
+        }
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals("Price must be a positive integer", first.getMessage());
+        assertEquals(0, first.getStackTrace().length);
+    }
+
+    /**
+     * Units.parse accepts what Integer.parseInt accepts for
+     * non-negative values and flags everything else.
+     */
+    @Test
+    public void testUnitsParse() {
+        assertEquals(42, Units.parse("42"));
+        assertEquals(7, Units.parse("+7"));
+        assertEquals(0, Units.parse("-0"));
+        assertEquals(Integer.MAX_VALUE, Units.parse("2147483647"));
+        assertEquals(Units.INVALID, Units.parse("2147483648"));
+        assertEquals(Units.INVALID, Units.parse("-3"));
+        assertEquals(Units.INVALID, Units.parse(""));
+        assertEquals(Units.INVALID, Units.parse("-"));
+        assertEquals(Units.INVALID, Units.parse("1.5"));
+        assertEquals(Units.INVALID, Units.parse(null));
+    }
+
 // ========================
 // RecipeBook unit tests
 // ========================
@@ -598,4 +756,808 @@ public class CoffeeMakerTest {
         }
     }
 
+    /**
+     * A growable book keeps accepting recipes past its initial size.
+     * Expected: 100 recipes fit in a book that starts with 2 slots, and
+     * each can be found by name at the slot it was added to.
+     */
+    @Test
+    public void testGrowableBookKeepsStableSlots() throws RecipeException {
+        RecipeBook growable = new RecipeBook(2, true);
+        for (int i = 0; i < 100; i++) {
+            Recipe r = new Recipe();
+            r.setName("Drink " + i);
+            assertTrue(growable.addRecipe(r));
+        }
+        assertTrue(growable.getRecipes().length >= 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, growable.indexOf("Drink " + i));
+            assertEquals("Drink " + i, growable.getRecipes()[i].getName());
+        }
+        assertEquals(-1, growable.indexOf("Drink 100"));
+    }
+
+    /**
+     * Deleting frees the slot and the name; the next add reuses the slot.
+     */
+    @Test
+    public void testDeletedSlotAndNameAreReused() throws RecipeException {
+        assertTrue(book.addRecipe(r1));
+        assertTrue(book.addRecipe(r2));
+        assertEquals("Coffee", book.deleteRecipe(0));
+        assertEquals(-1, book.indexOf("Coffee"));
+
+        assertTrue(book.addRecipe(r3));
+        assertEquals(0, book.indexOf("Mocha"));
+        assertEquals(1, book.indexOf("Latte"));
+        assertTrue("Name is free again after delete", book.addRecipe(r1));
+        assertEquals(2, book.indexOf("Coffee"));
+    }
+
+    /**
+     * A menu taken before a change is not affected by it.
+     * Expected: the old menu still shows r1 after deletion, and the
+     * new menu has a higher version and one fewer recipe.
+     */
+    @Test
+    public void testMenuSnapshotIsUnaffectedByLaterChanges() {
+        RecipeMenu before = coffeeMaker.getMenu();
+        assertEquals(3, before.getRecipeCount());
+
+        coffeeMaker.deleteRecipe(0);
+
+        RecipeMenu after = coffeeMaker.getMenu();
+        assertSame(r1, before.getRecipe(0));
+        assertNull(after.getRecipe(0));
+        assertEquals(2, after.getRecipeCount());
+        assertTrue(after.getVersion() > before.getVersion());
+        assertNull(after.getRecipe(99));
+    }
+
+
+// ========================
+// LockFreeInventory unit tests
+// ========================
+    /**
+     * A lock-free inventory starts with 15 units of everything.
+     */
+    @Test
+    public void testLockFreeInitialInventory() {
+        Inventory lockFree = new LockFreeInventory();
+        assertEquals(15, lockFree.getCoffee());
+        assertEquals(15, lockFree.getMilk());
+        assertEquals(15, lockFree.getSugar());
+        assertEquals(15, lockFree.getChocolate());
+        assertEquals(inventory.toString(), lockFree.toString());
+    }
+
+    /**
+     * A failed purchase must not deduct any ingredient.
+     * Expected: chocolate is short, so coffee, milk and sugar stay at 15.
+     */
+    @Test
+    public void testLockFreeUseIngredientsIsAllOrNothing() {
+        Inventory lockFree = new LockFreeInventory();
+        assertFalse(lockFree.useIngredients(3, 1, 1, 16));
+        assertEquals(15, lockFree.getCoffee());
+        assertEquals(15, lockFree.getMilk());
+        assertEquals(15, lockFree.getSugar());
+        assertEquals(15, lockFree.getChocolate());
+
+        assertTrue(lockFree.useIngredients(3, 1, 1, 15));
+        assertEquals(12, lockFree.getCoffee());
+        assertEquals(0, lockFree.getChocolate());
+    }
+
+    /**
+     * Adding past the per-ingredient capacity is rejected.
+     */
+    @Test(expected = InventoryException.class)
+    public void testLockFreeAddBeyondCapacity() throws InventoryException {
+        Inventory lockFree = new LockFreeInventory();
+        lockFree.addMilk(String.valueOf(LockFreeInventory.MAX_UNITS));
+    }
+
+    /**
+     * Concurrent purchases on a lock-free inventory never
+     * drive an ingredient negative.
+     * Expected: exactly 5 of the 3-coffee purchases succeed.
+     */
+    @Test
+    public void testLockFreeConcurrentPurchasesNeverGoNegative() throws Exception {
+        final CoffeeMaker cm = new CoffeeMaker(new RecipeBook(), new LockFreeInventory());
+        cm.addRecipe(r1);
+        final java.util.concurrent.atomic.AtomicInteger sold = new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] buyers = new Thread[4];
+        for (int i = 0; i < buyers.length; i++) {
+            buyers[i] = new Thread(() -> {
+                for (int j = 0; j < 10; j++) {
+                    if (cm.makeCoffee(0, 50) == 0) {
+                        sold.incrementAndGet();
+                    }
+                }
+            });
+            buyers[i].start();
+        }
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+        assertEquals("15 coffee units only allow 5 purchases", 5, sold.get());
+        assertTrue(cm.checkInventory().contains("Coffee: 0"));
+    }
+
+// ========================
+// RecipeCodec unit tests
+// ========================
+    /**
+     * Recipes survive an encode/decode round trip.
+     * Expected: empty slots are skipped and every field, including a
+     * non-ASCII name, comes back unchanged.
+     */
+    @Test
+    public void testRecipeCodecRoundTrip() throws RecipeException {
+        Recipe cafe = new Recipe();
+        cafe.setName("Caf\u00e9 con leche");
+        cafe.setPrice(65);
+        cafe.setAmtCoffee(2);
+        cafe.setAmtMilk(4);
+        Recipe[] recipes = {r1, null, cafe, r2};
+
+        ByteBuffer buffer = RecipeCodec.encode(recipes);
+        assertEquals(RecipeCodec.encodedSize(recipes), buffer.remaining());
+        Recipe[] decoded = RecipeCodec.decode(buffer);
+        assertEquals(0, buffer.remaining());
+
+        assertEquals(3, decoded.length);
+        assertEquals(r1, decoded[0]);
+        assertEquals(cafe, decoded[1]);
+        assertEquals(r2, decoded[2]);
+        assertEquals(65, decoded[1].getPrice());
+        assertEquals(4, decoded[1].getAmtMilk());
+        assertEquals(r2.getAmtChocolate(), decoded[2].getAmtChocolate());
+        assertEquals(r2.getAmtSugar(), decoded[2].getAmtSugar());
+    }
+
+    /**
+     * Blocks can be written after each other in one buffer.
+     * Expected: each decode reads exactly one block.
+     */
+    @Test
+    public void testRecipeCodecConsecutiveBlocks() throws RecipeException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+                RecipeCodec.encodedSize(new Recipe[] {r1}) + RecipeCodec.encodedSize(new Recipe[] {r2, r3}));
+        RecipeCodec.encode(new Recipe[] {r1}, buffer);
+        RecipeCodec.encode(new Recipe[] {r2, r3}, buffer);
+        buffer.flip();
+        assertEquals(1, RecipeCodec.decode(buffer).length);
+        Recipe[] second = RecipeCodec.decode(buffer);
+        assertEquals(r3, second[1]);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    /**
+     * Recipes with extra ingredients keep them, and recipes without
+     * them do not pick up the other recipes' padding.
+     */
+    @Test
+    public void testRecipeCodecExtraIngredient() throws RecipeException {
+        int vanilla = Ingredient.STANDARD + 1;
+        Recipe latte = new Recipe();
+        latte.setName("Vanilla Latte");
+        latte.setAmtMilk(3);
+        latte.setAmount(vanilla, 2);
+        Recipe[] decoded = RecipeCodec.decode(RecipeCodec.encode(new Recipe[] {r1, latte}));
+        assertEquals(2, decoded[1].getAmount(vanilla));
+        assertEquals(vanilla + 1, decoded[1].getIngredientCount());
+        assertEquals(Ingredient.STANDARD, decoded[0].getIngredientCount());
+    }
+
+    /**
+     * Blocks written with the four standard amounts and no
+     * ingredient count still decode.
+     */
+    @Test
+    public void testRecipeCodecStandardBlock() throws RecipeException {
+        ByteBuffer block = ByteBuffer.allocate(4 * 3 + 4 * 7 + 1);
+        block.putInt(0x434D5243).putInt(1).putInt(1);
+        block.putInt(0).putInt(1).putInt(40).putInt(3).putInt(1).putInt(0).putInt(2).put((byte) 'A');
+        block.flip();
+        Recipe[] decoded = RecipeCodec.decode(block);
+        assertEquals("A", decoded[0].getName());
+        assertEquals(40, decoded[0].getPrice());
+        assertEquals(2, decoded[0].getAmtChocolate());
+        assertFalse(block.hasRemaining());
+    }
+
+    /**
+     * Damaged blocks are rejected.
+     */
+    @Test(expected = RecipeException.class)
+    public void testRecipeCodecTruncatedBlock() throws RecipeException {
+        ByteBuffer buffer = RecipeCodec.encode(new Recipe[] {r1, r2});
+        buffer.limit(buffer.limit() - 1);
+        RecipeCodec.decode(buffer);
+    }
+
+    /**
+     * A header cut off inside its ingredient count is rejected as a
+     * damaged block, not with a buffer underflow.
+     */
+    @Test(expected = RecipeException.class)
+    public void testRecipeCodecTruncatedHeader() throws RecipeException {
+        ByteBuffer buffer = RecipeCodec.encode(new Recipe[] {r1});
+        buffer.limit(4 * 3 + 2);
+        RecipeCodec.decode(buffer);
+    }
+
+    /**
+     * The int setters reject negative values like the string setters.
+     */
+    @Test(expected = RecipeException.class)
+    public void testSetNegativePriceAsInt() throws RecipeException {
+        new Recipe().setPrice(-1);
+    }
+
+// ========================
+// PurchaseMetrics unit tests
+// ========================
+    /**
+     * Every order is counted by outcome and by slot.
+     * Expected: one count per outcome, invalid slots only by outcome.
+     */
+    @Test
+    public void testMetricsCountOutcomes() {
+        PurchaseMetrics metrics = new PurchaseMetrics(3);
+        coffeeMaker.addListener(metrics);
+        assertEquals(0, coffeeMaker.makeCoffee(0, 50));
+        assertEquals(10, coffeeMaker.makeCoffee(1, 10));
+        assertEquals(50, coffeeMaker.makeCoffee(7, 50));
+        // Milk runs out on the fifth Latte
+        for (int i = 0; i < 5; i++) {
+            coffeeMaker.makeCoffee(1, 100);
+        }
+        coffeeMaker.makeCoffeeBatch(new int[] {0, -1}, new int[] {50, 50});
+
+        assertEquals(6, metrics.getOrders(PurchaseOutcome.PURCHASED));
+        assertEquals(1, metrics.getOrders(PurchaseOutcome.INSUFFICIENT_FUNDS));
+        assertEquals(2, metrics.getOrders(PurchaseOutcome.INVALID_RECIPE));
+        assertEquals(1, metrics.getOrders(PurchaseOutcome.INSUFFICIENT_INVENTORY));
+        assertEquals(10, metrics.getOrders());
+        assertEquals(2, metrics.getSlotOrders(0));
+        assertEquals(6, metrics.getSlotOrders(1));
+        assertEquals(0, metrics.getSlotOrders(7));
+    }
+
+    /**
+     * Percentiles come from the recorded latencies.
+     * Expected: each percentile is within 1/16 above the true value.
+     */
+    @Test
+    public void testMetricsLatencyPercentiles() {
+        PurchaseMetrics metrics = new PurchaseMetrics(1);
+        assertArrayEquals(new long[] {0}, metrics.getLatencyNanos(50));
+        for (int i = 1; i <= 1000; i++) {
+            metrics.orderCompleted(0, PurchaseOutcome.PURCHASED, i * 1000L);
+        }
+        long[] latency = metrics.getLatencyNanos(50, 99, 99.9);
+        assertTrue(latency[0] >= 500000 && latency[0] <= 500000 * 17 / 16);
+        assertTrue(latency[1] >= 990000 && latency[1] <= 990000 * 17 / 16);
+        assertTrue(latency[2] >= 999000 && latency[2] <= 999000 * 17 / 16);
+    }
+
+    /**
+     * Buckets are contiguous and cover every latency.
+     */
+    @Test
+    public void testMetricsBuckets() {
+        for (long nanos : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = PurchaseMetrics.bucket(nanos);
+            assertTrue(nanos <= PurchaseMetrics.highestValue(bucket));
+            assertTrue(bucket == 0 || nanos > PurchaseMetrics.highestValue(bucket - 1));
+        }
+        assertEquals(0, PurchaseMetrics.bucket(-5));
+    }
+
+// ========================
+// CoffeeMakerMonitor unit tests
+// ========================
+    /**
+     * The MXBean shows live levels and counters.
+     * Expected: attributes read through the platform MBean server
+     * follow purchases and restocks, a purchase with no other thread
+     * around never waits for the lock, and unregister removes the
+     * bean.
+     */
+    @Test
+    public void testMonitorAttributes() throws Exception {
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        CoffeeMakerMonitor monitor = CoffeeMakerMonitor.register(coffeeMaker, "test machine");
+        try {
+            coffeeMaker.makeCoffee(0, 50);
+            coffeeMaker.makeCoffee(0, 10);
+            coffeeMaker.addInventory(1, 0, 0, 0);
+            assertEquals(13, server.getAttribute(monitor.getObjectName(), "Coffee"));
+            assertEquals(14, server.getAttribute(monitor.getObjectName(), "Milk"));
+            assertEquals(3, server.getAttribute(monitor.getObjectName(), "RecipeCount"));
+            assertEquals(1L, server.getAttribute(monitor.getObjectName(), "Purchases"));
+            assertEquals(1L, server.getAttribute(monitor.getObjectName(), "Restocks"));
+            assertEquals(0L, server.getAttribute(monitor.getObjectName(), "LockWaitNanos"));
+        } finally {
+            monitor.unregister();
+        }
+        assertFalse(server.isRegistered(monitor.getObjectName()));
+    }
+
+    /**
+     * A purchase that waits for the inventory lock adds to its wait
+     * time; a lock-free inventory never waits.
+     * Expected: with the lock held on another thread until the
+     * purchase is blocked, the wait time is positive.
+     */
+    @Test
+    public void testInventoryLockWait() throws Exception {
+        final Inventory machineInventory = coffeeMaker.inventory();
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> machineInventory.whileLocked(() -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        held.await();
+        Thread buyer = new Thread(() -> coffeeMaker.makeCoffee(0, 50));
+        buyer.start();
+        while (buyer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, machineInventory.getLockWaitNanos());
+        release.countDown();
+        holder.join();
+        buyer.join();
+        assertTrue(machineInventory.getLockWaitNanos() > 0);
+        assertEquals(1, coffeeMaker.getPurchases());
+        assertEquals(0, new LockFreeInventory().getLockWaitNanos());
+    }
+
+// ========================
+// Servings unit tests
+// ========================
+    /**
+     * Servings follow purchases and restocks.
+     * Expected: each recipe is limited by its scarcest ingredient.
+     */
+    @Test
+    public void testServingsFollowStock() throws InventoryException {
+        assertArrayEquals(new int[] {5, 5, 5}, coffeeMaker.getServings());
+        assertEquals(0, coffeeMaker.makeCoffee(0, 50));
+        assertEquals(4, coffeeMaker.getServings(0));
+        assertEquals(4, coffeeMaker.getServings(1));
+        assertEquals(4, coffeeMaker.getServings(2));
+        coffeeMaker.addInventory(9, 6, 0, 0);
+        assertArrayEquals(new int[] {7, 6, 7}, coffeeMaker.getServings());
+        assertEquals(0, coffeeMaker.getServings(3));
+        assertEquals(0, coffeeMaker.getServings(-1));
+    }
+
+    /**
+     * Servings follow recipe changes, and the inventory's setters.
+     * Expected: an edited slot is recomputed and a deleted one is empty.
+     */
+    @Test
+    public void testServingsFollowRecipes() throws RecipeException {
+        Recipe hotChocolate = new Recipe();
+        hotChocolate.setAmtChocolate(1);
+        coffeeMaker.editRecipe(2, hotChocolate);
+        assertEquals(15, coffeeMaker.getServings(2));
+        coffeeMaker.deleteRecipe(1);
+        assertArrayEquals(new int[] {5, 0, 15}, coffeeMaker.getServings());
+
+        Recipe water = new Recipe();
+        water.setName("Water");
+        coffeeMaker.addRecipe(water);
+        assertEquals(ServingsTable.UNLIMITED, coffeeMaker.getServings(1));
+
+        coffeeMaker.inventory().setChocolate(4);
+        coffeeMaker.inventory().setCoffee(1);
+        assertArrayEquals(new int[] {0, ServingsTable.UNLIMITED, 4}, coffeeMaker.getServings());
+    }
+
+    /**
+     * A lock-free inventory gives the same servings.
+     */
+    @Test
+    public void testServingsLockFree() {
+        CoffeeMaker lockFree = new CoffeeMaker(new RecipeBook(), new LockFreeInventory());
+        lockFree.addRecipe(r2);
+        assertEquals(5, lockFree.getServings(0));
+        lockFree.makeCoffeeBatch(new int[] {0, 0}, new int[] {75, 75});
+        assertEquals(3, lockFree.getServings(0));
+    }
+
+// ========================
+// Inventory version unit tests
+// ========================
+    /**
+     * The version moves with the stock and only with the stock.
+     * Expected: purchases, restocks and setters change it; a failed
+     * purchase and a rejected restock do not.
+     */
+    @Test
+    public void testInventoryVersion() throws InventoryException {
+        long version = inventory.getVersion();
+        assertFalse(inventory.useIngredients(16, 0, 0, 0));
+        try {
+            inventory.addCoffee(-1);
+        } catch (InventoryException e) {
+            // expected
+        }
+        assertEquals(version, inventory.getVersion());
+        assertTrue(inventory.useIngredients(1, 0, 0, 0));
+        assertNotEquals(version, inventory.getVersion());
+        version = inventory.getVersion();
+        inventory.addInventory(1, 1, 1, 1);
+        assertNotEquals(version, inventory.getVersion());
+        version = inventory.getVersion();
+        inventory.setMilk(3);
+        assertNotEquals(version, inventory.getVersion());
+
+        Inventory lockFree = new LockFreeInventory();
+        version = lockFree.getVersion();
+        assertTrue(lockFree.useIngredients(0, 0, 1, 0));
+        assertNotEquals(version, lockFree.getVersion());
+        lockFree.setSugar(15);
+        assertEquals(version, lockFree.getVersion());
+    }
+
+    /**
+     * checkInventory hands back the same text until the stock changes.
+     */
+    @Test
+    public void testCheckInventoryCached() throws InventoryException {
+        String first = coffeeMaker.checkInventory();
+        assertSame(first, coffeeMaker.checkInventory());
+        assertEquals(0, coffeeMaker.makeCoffee(0, 50));
+        String second = coffeeMaker.checkInventory();
+        assertNotSame(first, second);
+        assertEquals("Coffee: 12\nMilk: 14\nSugar: 14\nChocolate: 15\n", second);
+        assertSame(second, coffeeMaker.checkInventory());
+        coffeeMaker.addInventory(3, 1, 1, 0);
+        assertEquals(first, coffeeMaker.checkInventory());
+    }
+
+    /**
+     * A copy of the stock never shows half of a change.
+     * Expected: while another thread takes and puts back one unit
+     * of everything, every copy and every text has four equal
+     * amounts.
+     */
+    @Test
+    public void testStockCopyIsWhole() throws Exception {
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100000; i++) {
+                    inventory.useIngredients(1, 1, 1, 1);
+                    inventory.addInventory(1, 1, 1, 1);
+                }
+            } catch (InventoryException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        CoffeeMaker machine = new CoffeeMaker(book, inventory);
+        writer.start();
+        while (writer.isAlive()) {
+            int[] stock = inventory.getStock();
+            assertEquals(stock[0], stock[1]);
+            assertEquals(stock[0], stock[3]);
+            String[] lines = machine.checkInventory().split("\n");
+            assertEquals(lines[0].substring("Coffee: ".length()), lines[3].substring("Chocolate: ".length()));
+        }
+        writer.join();
+    }
+
+// ========================
+// Reservation unit tests
+// ========================
+    /**
+     * A reservation takes the ingredients straight away; committing
+     * keeps them and cancelling puts them back.
+     */
+    @Test
+    public void testReserveCommitCancel() {
+        long kept = inventory.reserve(r1, 1, TimeUnit.MINUTES);
+        long returned = inventory.reserve(r3, 1, TimeUnit.MINUTES);
+        assertTrue(kept > 0 && returned > 0 && kept != returned);
+        assertEquals(9, inventory.getCoffee());
+        assertEquals(13, inventory.getChocolate());
+        assertEquals(2, inventory.getReservationCount());
+
+        assertTrue(inventory.commit(kept));
+        assertTrue(inventory.cancel(returned));
+        assertFalse(inventory.commit(kept));
+        assertFalse(inventory.cancel(returned));
+        assertEquals(12, inventory.getCoffee());
+        assertEquals(14, inventory.getMilk());
+        assertEquals(15, inventory.getChocolate());
+        assertEquals(0, inventory.getReservationCount());
+    }
+
+    /**
+     * Reserving more than the stock, or a negative amount, fails
+     * without changing the stock.
+     */
+    @Test
+    public void testReserveNotEnough() {
+        assertEquals(-1, inventory.reserve(16, 0, 0, 0, 1, TimeUnit.MINUTES));
+        assertEquals(-1, inventory.reserve(-1, 0, 0, 0, 1, TimeUnit.MINUTES));
+        assertEquals(15, inventory.getCoffee());
+        assertEquals(0, inventory.getReservationCount());
+    }
+
+    /**
+     * An abandoned reservation returns its stock when its lease runs
+     * out, and can no longer be committed.
+     */
+    @Test
+    public void testReservationExpires() throws InventoryException {
+        long shortLease = inventory.reserve(0, 5, 0, 0, 1, TimeUnit.SECONDS);
+        long longLease = inventory.reserve(0, 0, 5, 0, 1, TimeUnit.HOURS);
+        inventory.addMilk(1);
+        assertEquals(0, inventory.expireReservations());
+        assertEquals(1, inventory.expireReservations(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(16, inventory.getMilk());
+        assertEquals(10, inventory.getSugar());
+        assertFalse(inventory.commit(shortLease));
+        assertTrue(inventory.commit(longLease));
+    }
+
+    /**
+     * A purchase reserved through the coffee maker reaches its
+     * listeners when it is made, at the price it was reserved at.
+     * Expected: too little money leaves the reservation open; a
+     * cancelled or unknown reservation returns the money.
+     */
+    @Test
+    public void testReservedPurchaseReachesListeners() throws RecipeException {
+        final int[] sold = new int[3];
+        coffeeMaker.addListener(new CoffeeMakerListener() {
+            @Override
+            public void coffeePurchased(int slot, Recipe recipe, int price, int amtPaid, int[] amounts) {
+                sold[0]++;
+                sold[1] = slot;
+                sold[2] = price + amounts[Ingredient.CHOCOLATE];
+            }
+        });
+        long mocha = coffeeMaker.reserveCoffee(2, 1, TimeUnit.MINUTES);
+        long coffee = coffeeMaker.reserveCoffee(0, 1, TimeUnit.MINUTES);
+        assertTrue(mocha > 0 && coffee > 0);
+        assertEquals(-1, coffeeMaker.reserveCoffee(3, 1, TimeUnit.MINUTES));
+        r3.setPrice("200");
+
+        assertEquals(50, coffeeMaker.makeReservedCoffee(mocha, 50));
+        assertEquals(0, sold[0]);
+        assertEquals(20, coffeeMaker.makeReservedCoffee(mocha, 120));
+        assertEquals(1, sold[0]);
+        assertEquals(2, sold[1]);
+        assertEquals(102, sold[2]);
+
+        assertTrue(coffeeMaker.cancelReservation(coffee));
+        assertEquals(50, coffeeMaker.makeReservedCoffee(coffee, 50));
+        assertEquals(120, coffeeMaker.makeReservedCoffee(mocha, 120));
+        assertEquals(1, sold[0]);
+        assertTrue(coffeeMaker.checkInventory().startsWith("Coffee: 12\n"));
+    }
+
+    /**
+     * Units that no longer fit when a reservation is cancelled fill
+     * the stock to its limit and are counted as discarded.
+     */
+    @Test
+    public void testCancelAfterRefillToLimit() {
+        long id = inventory.reserve(5, 0, 0, 0, 1, TimeUnit.MINUTES);
+        inventory.setCoffee(Integer.MAX_VALUE - 2);
+        assertTrue(inventory.cancel(id));
+        assertEquals(Integer.MAX_VALUE, inventory.getCoffee());
+        assertEquals(3, inventory.getDiscardedUnits());
+
+        Inventory lockFree = new LockFreeInventory();
+        id = lockFree.reserve(r3, 1, TimeUnit.MINUTES);
+        lockFree.setChocolate(LockFreeInventory.MAX_UNITS - 1);
+        assertTrue(lockFree.cancel(id));
+        assertEquals(LockFreeInventory.MAX_UNITS, lockFree.getChocolate());
+        assertEquals(15, lockFree.getCoffee());
+        assertEquals(1, lockFree.getDiscardedUnits());
+    }
+
+    /**
+     * Reservations work the same on a lock-free inventory.
+     */
+    @Test
+    public void testReserveLockFree() {
+        Inventory lockFree = new LockFreeInventory();
+        long id = lockFree.reserve(r2, 1, TimeUnit.MINUTES);
+        assertEquals(12, lockFree.getMilk());
+        assertTrue(lockFree.cancel(id));
+        assertEquals(15, lockFree.getMilk());
+    }
+
+// ========================
+// Ingredient unit tests
+// ========================
+    /**
+     * The named getters and setters are views of the ingredient ids.
+     */
+    @Test
+    public void testIngredientIds() throws RecipeException, InventoryException {
+        assertEquals(Ingredient.STANDARD, inventory.getIngredientCount());
+        assertEquals("Sugar", inventory.getIngredientName(Ingredient.SUGAR));
+        inventory.setStock(Ingredient.MILK, 4);
+        inventory.addStock(Ingredient.CHOCOLATE, 2);
+        assertEquals(4, inventory.getMilk());
+        assertEquals(17, inventory.getChocolate());
+        assertArrayEquals(new int[] {15, 4, 15, 17}, inventory.getStock());
+
+        assertEquals(3, r1.getAmount(Ingredient.COFFEE));
+        assertEquals(0, r1.getAmount(7));
+        recipe.setAmount(Ingredient.MILK, 2);
+        assertEquals(2, recipe.getAmtMilk());
+        assertEquals(Ingredient.STANDARD, recipe.getIngredientCount());
+    }
+
+    /**
+     * Extra ingredients are stocked, used and reported like the
+     * standard four.
+     * Expected: a latte with syrup uses the syrup and stops when it
+     * runs out.
+     */
+    @Test
+    public void testExtraIngredients() throws RecipeException, InventoryException {
+        CoffeeMaker cafe = new CoffeeMaker(new RecipeBook(), new Inventory("Vanilla", "Oat milk"));
+        int vanilla = Ingredient.STANDARD;
+        assertEquals(6, cafe.getIngredientCount());
+        assertEquals("Vanilla", cafe.getIngredientName(vanilla));
+        assertEquals(0, cafe.getStock(vanilla));
+        cafe.addInventory(new int[] {0, 0, 0, 0, 3});
+
+        Recipe vanillaLatte = new Recipe();
+        vanillaLatte.setName("Vanilla Latte");
+        vanillaLatte.setAmtCoffee(2);
+        vanillaLatte.setAmtMilk(3);
+        vanillaLatte.setAmount(vanilla, 2);
+        vanillaLatte.setPrice(80);
+        assertEquals(5, vanillaLatte.getIngredientCount());
+        cafe.addRecipe(vanillaLatte);
+        assertEquals(1, cafe.getServings(0));
+
+        assertEquals(20, cafe.makeCoffee(0, 100));
+        assertEquals(1, cafe.getStock(vanilla));
+        assertEquals(13, cafe.getStock(Ingredient.COFFEE));
+        assertEquals(100, cafe.makeCoffee(0, 100));
+        assertEquals("Coffee: 13\nMilk: 12\nSugar: 15\nChocolate: 15\nVanilla: 1\nOat milk: 0\n", 
+                cafe.checkInventory());
+    }
+
+    /**
+     * Amounts for ingredients an inventory does not have are
+     * rejected.
+     */
+    @Test
+    public void testUnknownIngredient() throws RecipeException {
+        assertFalse(inventory.useIngredients(new int[] {1, 0, 0, 0, 1}));
+        assertTrue(inventory.useIngredients(new int[] {1, 0, 0, 0, 0}));
+        assertFalse(inventory.useIngredients(new int[] {-1}));
+        assertEquals(14, inventory.getCoffee());
+        try {
+            inventory.addInventory(new int[] {1, 0, 0, 0, 1});
+            fail("An unknown ingredient cannot be added");
+        } catch (InventoryException e) {
+            assertEquals(14, inventory.getCoffee());
+        }
+
+        Inventory lockFree = new LockFreeInventory();
+        Recipe syrup = new Recipe();
+        syrup.setAmount(Ingredient.STANDARD, 1);
+        assertFalse(lockFree.useIngredients(syrup));
+        assertTrue(lockFree.useIngredients(new int[] {1, 2}));
+        assertArrayEquals(new int[] {14, 13, 15, 15}, lockFree.getStock());
+    }
+
+    /**
+     * Negative amounts are rejected for any ingredient.
+     */
+    @Test(expected = RecipeException.class)
+    public void testNegativeExtraAmount() throws RecipeException {
+        recipe.setAmount(5, -1);
+    }
+
+// ========================
+// RecipeValue unit tests
+// ========================
+    /**
+     * A recipe converts to a value and back without losing fields.
+     * Expected: equal values with equal hashes, and a new Recipe.
+     */
+    @Test
+    public void testRecipeValueRoundTrip() throws RecipeException {
+        RecipeValue value = RecipeValue.of(r3);
+        assertEquals("Mocha", value.getName());
+        assertEquals(100, value.getPrice());
+        assertEquals(2, value.getAmtChocolate());
+
+        RecipeValue built = new RecipeValue.Builder().name(new String("Mocha")).price(100)
+                .amtCoffee(3).amtMilk(1).amtSugar(1).amtChocolate(2).build();
+        assertEquals(value, built);
+        assertEquals(value.hashCode(), built.hashCode());
+
+        Recipe copy = built.toRecipe();
+        assertNotSame(r3, copy);
+        assertEquals(r3, copy);
+        assertEquals(2, copy.getAmtChocolate());
+        assertEquals(100, copy.getPrice());
+    }
+
+    /**
+     * Values differ in any field, and later changes to the recipe or
+     * the builder do not reach a value already made.
+     */
+    @Test
+    public void testRecipeValueImmutable() throws RecipeException {
+        RecipeValue.Builder builder = new RecipeValue.Builder().name("Syrup").amount(Ingredient.STANDARD, 1);
+        RecipeValue first = builder.build();
+        RecipeValue second = builder.amount(Ingredient.STANDARD, 2).build();
+        assertEquals(1, first.getAmount(Ingredient.STANDARD));
+        assertEquals(2, second.getAmount(Ingredient.STANDARD));
+        assertFalse(first.equals(second));
+        assertEquals(new RecipeValue.Builder().name("Syrup").amount(6, 0).build(),
+                new RecipeValue.Builder().name("Syrup").build());
+
+        RecipeValue value = RecipeValue.of(r1);
+        r1.setPrice(10);
+        assertEquals(50, value.getPrice());
+    }
+
+    /**
+     * Editing with a value keeps the slot's name without renaming the
+     * value.
+     */
+    @Test
+    public void testEditRecipeWithValue() throws RecipeException {
+        RecipeValue cheaper = new RecipeValue.Builder().name("Cheap Latte").price(40).amtCoffee(2).build();
+        assertEquals("Latte", coffeeMaker.editRecipe(1, cheaper));
+        assertEquals("Cheap Latte", cheaper.getName());
+        assertEquals("Latte", coffeeMaker.getRecipes()[1].getName());
+        assertEquals(10, coffeeMaker.makeCoffee(1, 50));
+        coffeeMaker.deleteRecipe(0);
+        assertTrue(coffeeMaker.addRecipe(cheaper));
+        assertEquals("Cheap Latte", coffeeMaker.getRecipes()[0].getName());
+    }
+
+    /**
+     * The builder checks every field.
+     */
+    @Test
+    public void testRecipeValueBuilderChecks() {
+        try {
+            new RecipeValue.Builder().price(-1);
+            fail("A negative price is not allowed");
+        } catch (RecipeException e) {
+            assertEquals("Price must be a positive integer", e.getMessage());
+        }
+        try {
+            new RecipeValue.Builder().amtSugar(-1);
+            fail("A negative amount is not allowed");
+        } catch (RecipeException e) {
+            assertEquals("Units of sugar must be a positive integer", e.getMessage());
+        }
+        try {
+            new RecipeValue.Builder().price(5).build();
+            fail("A recipe needs a name");
+        } catch (RecipeException e) {
+            // expected
+        }
+    }
+
 }
@@ -17,6 +17,7 @@
  */
 package edu.ncsu.csc326.coffeemaker;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
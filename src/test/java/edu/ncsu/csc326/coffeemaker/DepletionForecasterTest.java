@@ -0,0 +1,134 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for DepletionForecaster.
+ */
+public class DepletionForecasterTest {
+
+    private static final long SECOND = 1000000000L;
+
+    private CoffeeMaker coffeeMaker;
+    private DepletionForecaster forecaster;
+    /** The forecaster's clock, which starts at 0 */
+    private long now;
+
+    @Before
+    public void setUp() {
+        coffeeMaker = new CoffeeMaker();
+        forecaster = new DepletionForecaster(coffeeMaker, 10, () -> now);
+    }
+
+    /**
+     * Records a sale at the given time, which becomes the current
+     * time.
+     */
+    private void sale(long time, int coffee, int milk, int sugar, int chocolate) {
+        now = time;
+        forecaster.observe(time, coffee, milk, sugar, chocolate);
+    }
+
+    /**
+     * Steady demand of 3 coffee and 1 milk a second.
+     * Expected: 15 units last 5 and 15 seconds.
+     */
+    @Test
+    public void testSteadyDemand() {
+        for (int i = 0; i < 5; i++) {
+            sale(i * SECOND, 3, 1, 0, 0);
+        }
+        assertEquals(5.0, forecaster.getCoffeeSecondsLeft(), 0.001);
+        assertEquals(15.0, forecaster.getMilkSecondsLeft(), 0.001);
+        assertEquals(Double.POSITIVE_INFINITY, forecaster.getSugarSecondsLeft(), 0.0);
+        assertEquals(5.0, forecaster.getSecondsLeft(), 0.001);
+    }
+
+    /**
+     * Only the most recent sales count once the window is full.
+     * Expected: the early rush no longer shortens the estimate.
+     */
+    @Test
+    public void testWindowFollowsDemand() {
+        long time = 0;
+        for (int i = 0; i < 10; i++) {
+            sale(time, 0, 0, 0, 5);
+            time += SECOND;
+        }
+        assertEquals(3.0, forecaster.getChocolateSecondsLeft(), 0.001);
+        for (int i = 0; i < 10; i++) {
+            sale(time, 0, 0, 0, 1);
+            time += SECOND;
+        }
+        assertEquals(15.0, forecaster.getChocolateSecondsLeft(), 0.001);
+    }
+
+    /**
+     * A restock raises the level but not the demand.
+     */
+    @Test
+    public void testRestock() throws InventoryException {
+        for (int i = 0; i < 4; i++) {
+            sale(i * SECOND, 0, 0, 1, 0);
+        }
+        coffeeMaker.addInventory("0", "0", "15", "0");
+        assertEquals(30.0, forecaster.getSugarSecondsLeft(), 0.001);
+    }
+
+    /**
+     * Too few sales give no estimate; an empty ingredient has no
+     * time left.
+     */
+    @Test
+    public void testNoEstimate() throws RecipeException {
+        assertEquals(Double.POSITIVE_INFINITY, forecaster.getSecondsLeft(), 0.0);
+        sale(0, 1, 1, 1, 1);
+        assertEquals(Double.POSITIVE_INFINITY, forecaster.getCoffeeSecondsLeft(), 0.0);
+
+        Recipe espresso = new Recipe();
+        espresso.setName("Espresso");
+        espresso.setAmtCoffee(15);
+        espresso.setPrice(10);
+        coffeeMaker.addRecipe(espresso);
+        coffeeMaker.addListener(forecaster);
+        assertEquals(0, coffeeMaker.makeCoffee(0, 10));
+        assertEquals(0.0, forecaster.getCoffeeSecondsLeft(), 0.0);
+        assertEquals(0.0, forecaster.getSecondsLeft(), 0.0);
+    }
+
+    /**
+     * A window must hold at least two sales.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWindowTooSmall() {
+        new DepletionForecaster(coffeeMaker, 1);
+    }
+
+    /**
+     * The time since the last sale counts as time without demand.
+     * Expected: once sales stop, the coffee lasts longer than the
+     * 5 seconds the last sales alone suggest, and longer the longer
+     * the machine stays idle.
+     */
+    @Test
+    public void testDemandFadesWhenSalesStop() {
+        for (int i = 0; i < 5; i++) {
+            sale(i * SECOND, 3, 0, 0, 0);
+        }
+        assertEquals(5.0, forecaster.getCoffeeSecondsLeft(), 0.001);
+        now = 60 * SECOND;
+        double idle = forecaster.getCoffeeSecondsLeft();
+        assertTrue(idle > 50);
+        now = 3600 * SECOND;
+        assertTrue(forecaster.getCoffeeSecondsLeft() > idle);
+        // Asking does not change the window
+        now = 4 * SECOND;
+        assertEquals(5.0, forecaster.getCoffeeSecondsLeft(), 0.001);
+    }
+}
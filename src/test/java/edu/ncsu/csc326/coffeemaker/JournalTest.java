@@ -0,0 +1,222 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.InventoryException;
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for Journal.
+ */
+public class JournalTest {
+
+    private Path file;
+    private Journal journal;
+    private CoffeeMaker coffeeMaker;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("coffeemaker", ".journal");
+        journal = new Journal(file, 10, TimeUnit.MILLISECONDS, 64);
+        coffeeMaker = new CoffeeMaker();
+        coffeeMaker.addListener(journal);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(file);
+    }
+
+    private static Recipe recipe(String name, String price, String coffee, String milk, 
+            String sugar, String chocolate) throws RecipeException {
+        Recipe r = new Recipe();
+        r.setName(name);
+        r.setPrice(price);
+        r.setAmtCoffee(coffee);
+        r.setAmtMilk(milk);
+        r.setAmtSugar(sugar);
+        r.setAmtChocolate(chocolate);
+        return r;
+    }
+
+    /**
+     * Reopens the journal and replays it into a new machine.
+     */
+    private CoffeeMaker restart() throws IOException {
+        journal.close();
+        journal = new Journal(file, 10, TimeUnit.MILLISECONDS, 64);
+        RecipeBook book = new RecipeBook();
+        Inventory inventory = new Inventory();
+        journal.replay(book, inventory);
+        CoffeeMaker restored = new CoffeeMaker(book, inventory);
+        restored.addListener(journal);
+        return restored;
+    }
+
+    /**
+     * Every kind of change is rebuilt from the journal.
+     * Expected: the same recipes in the same slots and the same
+     * inventory as before the restart.
+     */
+    @Test
+    public void testReplayRebuildsState() throws Exception {
+        coffeeMaker.addRecipe(recipe("Coffee", "50", "3", "1", "1", "0"));
+        coffeeMaker.addRecipe(recipe("Mocha", "75", "3", "1", "1", "2"));
+        coffeeMaker.addRecipe(recipe("Latte", "60", "3", "3", "1", "0"));
+        coffeeMaker.deleteRecipe(1);
+        coffeeMaker.addRecipe(recipe("Hot Chocolate", "65", "0", "2", "1", "4"));
+        coffeeMaker.editRecipe(2, recipe("Ignored", "70", "2", "4", "0", "0"));
+        coffeeMaker.addInventory(5, 4, 3, 2);
+        assertEquals(10, coffeeMaker.makeCoffee(0, 60));
+        assertEquals(35, coffeeMaker.makeCoffee(1, 100));
+        coffeeMaker.makeCoffeeBatch(new int[] {2, 2, 0}, new int[] {70, 70, 50});
+        // Failed changes leave no trace
+        assertEquals(20, coffeeMaker.makeCoffee(0, 20));
+        try {
+            coffeeMaker.addInventory(1, 1, 1, -1);
+            fail("Negative chocolate should be rejected");
+        } catch (InventoryException e) {
+            // expected
+        }
+
+        String inventory = coffeeMaker.checkInventory();
+        Recipe[] recipes = coffeeMaker.getRecipes();
+
+        CoffeeMaker restored = restart();
+        assertEquals(inventory, restored.checkInventory());
+        Recipe[] restoredRecipes = restored.getRecipes();
+        assertEquals(recipes.length, restoredRecipes.length);
+        for (int i = 0; i < recipes.length; i++) {
+            assertEquals(recipes[i], restoredRecipes[i]);
+            assertEquals(recipes[i].getPrice(), restoredRecipes[i].getPrice());
+            assertEquals(recipes[i].getAmtMilk(), restoredRecipes[i].getAmtMilk());
+        }
+        assertEquals("Latte", restoredRecipes[2].getName());
+        assertEquals(70, restoredRecipes[2].getPrice());
+    }
+
+    /**
+     * A reopened journal appends after its existing records.
+     * Expected: changes from both sessions are replayed.
+     */
+    @Test
+    public void testAppendAfterRestart() throws Exception {
+        coffeeMaker.addRecipe(recipe("Coffee", "50", "3", "1", "1", "0"));
+        coffeeMaker.makeCoffee(0, 50);
+        CoffeeMaker restored = restart();
+        restored.makeCoffee(0, 50);
+        restored.addRecipe(recipe("Tea", "20", "0", "0", "1", "0"));
+
+        CoffeeMaker again = restart();
+        assertEquals("Coffee", again.getRecipes()[0].getName());
+        assertEquals("Tea", again.getRecipes()[1].getName());
+        assertTrue(again.checkInventory().startsWith("Coffee: 9\nMilk: 13\nSugar: 13\n"));
+    }
+
+    /**
+     * Records that span several mapped regions are all replayed.
+     * Expected: every restock is counted.
+     */
+    @Test
+    public void testReplayAcrossRegions() throws Exception {
+        int restocks = Journal.REGION_SIZE / 16;
+        for (int i = 0; i < restocks; i++) {
+            coffeeMaker.addInventory(1, 0, 0, 0);
+        }
+        coffeeMaker.addRecipe(recipe("Coffee", "50", "3", "1", "1", "0"));
+        CoffeeMaker restored = restart();
+        assertTrue(restored.checkInventory().startsWith("Coffee: " + (15 + restocks) + "\n"));
+        assertEquals("Coffee", restored.getRecipes()[0].getName());
+    }
+
+    /**
+     * A journal that does not match the recipe book it is
+     * replayed into is reported rather than half applied silently.
+     */
+    @Test
+    public void testReplayIntoWrongBookFails() throws Exception {
+        coffeeMaker.addRecipe(recipe("Coffee", "50", "3", "1", "1", "0"));
+        journal.commit();
+        RecipeBook book = new RecipeBook();
+        book.addRecipe(recipe("Tea", "20", "0", "0", "1", "0"));
+        try {
+            journal.replay(book, new Inventory());
+            fail("Coffee cannot go back into slot 0");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A record cut short by a crash is dropped, and records appended
+     * over it on later runs replay cleanly.
+     * Expected: crash, restart, append, restart rebuilds the state
+     * without the torn purchase.
+     */
+    @Test
+    public void testAppendOverTornRecord() throws Exception {
+        coffeeMaker.addRecipe(recipe("Coffee", "50", "3", "1", "1", "0"));
+        coffeeMaker.addRecipe(recipe("Tea", "20", "0", "0", "1", "0"));
+        coffeeMaker.makeCoffee(0, 50);
+        long end = journal.getEnd();
+        journal.close();
+        // The fields of a purchase whose length never made it to disk
+        ByteBuffer torn = ByteBuffer.allocate(4 * 6);
+        torn.put((byte) 5).putInt(0).putInt(50).putInt(3).putInt(1).putInt(1).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(torn, end + 4);
+        }
+
+        CoffeeMaker restored = restart();
+        assertEquals("Coffee", restored.deleteRecipe(0));
+        CoffeeMaker again = restart();
+        assertNull(again.getRecipes()[0]);
+        assertEquals("Tea", again.getRecipes()[1].getName());
+        assertTrue(again.checkInventory().startsWith("Coffee: 12\nMilk: 14\nSugar: 14\n"));
+    }
+
+    /**
+     * Recipes and stock with extra ingredients replay whole.
+     * Expected: the syrup stock and the recipe's syrup come back; an
+     * inventory without the syrup cannot take the journal.
+     */
+    @Test
+    public void testReplayExtraIngredients() throws Exception {
+        CoffeeMaker cafe = new CoffeeMaker(new RecipeBook(), new Inventory("Vanilla"));
+        cafe.addListener(journal);
+        int vanilla = Ingredient.STANDARD;
+        cafe.addInventory(new int[] {0, 0, 0, 0, 5});
+        Recipe latte = recipe("Vanilla Latte", "80", "2", "3", "0", "0");
+        latte.setAmount(vanilla, 2);
+        cafe.addRecipe(latte);
+        assertEquals(20, cafe.makeCoffee(0, 100));
+        journal.close();
+
+        journal = new Journal(file, 10, TimeUnit.MILLISECONDS, 64);
+        RecipeBook book = new RecipeBook();
+        Inventory inventory = new Inventory("Vanilla");
+        journal.replay(book, inventory);
+        assertEquals(3, inventory.getStock(vanilla));
+        assertEquals(13, inventory.getCoffee());
+        assertEquals(2, book.getRecipes()[0].getAmount(vanilla));
+        try {
+            journal.replay(new RecipeBook(), new Inventory());
+            fail("The journal holds syrup the inventory does not stock");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("ingredient 4"));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for OrderProcessor.
+ */
+public class OrderProcessorTest {
+
+    private CoffeeMaker coffeeMaker;
+    private OrderProcessor processor;
+
+    @Before
+    public void setUp() throws RecipeException {
+        coffeeMaker = new CoffeeMaker();
+        Recipe coffee = new Recipe();
+        coffee.setName("Coffee");
+        coffee.setAmtCoffee("3");
+        coffee.setPrice("50");
+        coffeeMaker.addRecipe(coffee);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (processor != null) {
+            processor.close();
+        }
+    }
+
+    /**
+     * Orders are made in submission order with makeCoffee's change.
+     * Expected: five coffees use up the 15 coffee units, so the sixth
+     * order gets all of its money back.
+     */
+    @Test
+    public void testOrdersAreMadeInOrder() throws Exception {
+        processor = new OrderProcessor(coffeeMaker, 4, OrderProcessor.FullPolicy.BLOCK);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Integer>[] change = (CompletableFuture<Integer>[]) new CompletableFuture<?>[6];
+        for (int i = 0; i < change.length; i++) {
+            change[i] = processor.submit(0, 60);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(10), change[i].get());
+        }
+        assertEquals(Integer.valueOf(60), change[5].get());
+        assertEquals(Integer.valueOf(25), processor.submit(2, 25).get());
+    }
+
+    /**
+     * A full buffer rejects orders under the REJECT policy.
+     * Expected: with the consumer stuck on the first order, one order
+     * fills the single slot and the next is rejected.
+     */
+    @Test
+    public void testFullBufferRejects() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CoffeeMaker slow = new CoffeeMaker() {
+            @Override
+            public int makeCoffee(int recipeToPurchase, int amtPaid) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return amtPaid;
+            }
+        };
+        processor = new OrderProcessor(slow, 1, OrderProcessor.FullPolicy.REJECT);
+        CompletableFuture<Integer> first = processor.submit(0, 1);
+        started.await();
+        CompletableFuture<Integer> second = processor.submit(0, 2);
+        CompletableFuture<Integer> third = processor.submit(0, 3);
+
+        try {
+            third.get();
+            fail("The third order should not fit");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        release.countDown();
+        assertEquals(Integer.valueOf(1), first.get());
+        assertEquals(Integer.valueOf(2), second.get());
+    }
+
+    /**
+     * Closing drains queued orders and rejects new ones.
+     */
+    @Test
+    public void testCloseDrainsAndRejects() throws Exception {
+        processor = new OrderProcessor(coffeeMaker, 8, OrderProcessor.FullPolicy.BLOCK);
+        CompletableFuture<Integer> queued = processor.submit(0, 50);
+        processor.close();
+        assertEquals(Integer.valueOf(0), queued.get());
+        assertTrue(processor.submit(0, 50).isCompletedExceptionally());
+        assertEquals(0, processor.getPendingOrders());
+    }
+
+    /**
+     * An Error while making an order stops the consumer.
+     * Expected: the order fails with the Error, and the queued and
+     * later orders fail instead of hanging.
+     */
+    @Test
+    public void testErrorFailsQueuedOrders() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        CoffeeMaker broken = new CoffeeMaker() {
+            @Override
+            public int makeCoffee(int recipeToPurchase, int amtPaid) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new OutOfMemoryError("test");
+            }
+        };
+        processor = new OrderProcessor(broken, 4, OrderProcessor.FullPolicy.BLOCK);
+        CompletableFuture<Integer> first = processor.submit(0, 1);
+        CompletableFuture<Integer> queued = processor.submit(0, 2);
+        release.countDown();
+        try {
+            first.get();
+            fail("The first order should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail("The queued order should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        processor.close();
+        assertTrue(processor.submit(0, 3).isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,189 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for RecipeIndex.
+ */
+public class RecipeIndexTest {
+
+    private CoffeeMaker coffeeMaker;
+
+    @Before
+    public void setUp() throws RecipeException {
+        coffeeMaker = new CoffeeMaker(new RecipeBook(4, true), new Inventory());
+        coffeeMaker.addRecipe(recipe("Mocha", 75, 3, 1, 1, 2));
+        coffeeMaker.addRecipe(recipe("Latte", 60, 3, 3, 0, 0));
+        coffeeMaker.addRecipe(recipe("Mochaccino", 90, 2, 2, 0, 3));
+        coffeeMaker.addRecipe(recipe("Coffee", 40, 3, 0, 0, 0));
+    }
+
+    private static Recipe recipe(String name, int price, int coffee, int milk, int sugar, int chocolate)
+            throws RecipeException {
+        return new RecipeValue.Builder().name(name).price(price).amtCoffee(coffee)
+                .amtMilk(milk).amtSugar(sugar).amtChocolate(chocolate).build().toRecipe();
+    }
+
+    /**
+     * Returns the index of the current menu.
+     */
+    private RecipeIndex index() {
+        return coffeeMaker.getRecipeIndex();
+    }
+
+    private static BitSet slots(int... slots) {
+        BitSet set = new BitSet();
+        for (int slot : slots) {
+            set.set(slot);
+        }
+        return set;
+    }
+
+    /**
+     * Prefixes match from the start of the name, ignoring case.
+     */
+    @Test
+    public void testStartingWith() {
+        assertEquals(slots(0, 2), index().startingWith("moc"));
+        assertEquals(slots(2), index().startingWith("MOCHAC"));
+        assertEquals(slots(0, 2), index().startingWith("mocha"));
+        assertEquals(slots(0, 1, 2, 3), index().startingWith(""));
+        assertTrue(index().startingWith("tea").isEmpty());
+        assertTrue(index().startingWith("mochas").isEmpty());
+    }
+
+    /**
+     * Price and amount ranges include both ends.
+     */
+    @Test
+    public void testRanges() {
+        assertEquals(slots(1, 3), index().priceBetween(40, 60));
+        assertEquals(slots(0, 2), index().priceBetween(61, 1000));
+        assertTrue(index().priceBetween(50, 40).isEmpty());
+        assertEquals(slots(0, 1, 3), index().amountBetween(Ingredient.COFFEE, 3, 3));
+        assertEquals(slots(0, 3), index().amountBetween(Ingredient.MILK, 0, 1));
+        assertEquals(slots(2), index().amountBetween(Ingredient.CHOCOLATE, 3, Integer.MAX_VALUE));
+        assertEquals(slots(0, 2), index().using(Ingredient.CHOCOLATE));
+    }
+
+    /**
+     * Queries combine with BitSet.and.
+     * Expected: the only recipe with no milk under 50 is Coffee.
+     */
+    @Test
+    public void testNoMilkUnderPrice() {
+        BitSet found = index().priceBetween(0, 49);
+        found.and(index().without(Ingredient.MILK));
+        assertEquals(slots(3), found);
+        assertEquals(slots(1, 2, 3), index().without(Ingredient.SUGAR));
+    }
+
+    /**
+     * Deleting and editing recipes updates the index.
+     */
+    @Test
+    public void testKeptUpToDate() throws RecipeException {
+        assertEquals("Mocha", coffeeMaker.deleteRecipe(0));
+        assertEquals(slots(2), index().startingWith("moc"));
+        assertTrue(index().priceBetween(75, 75).isEmpty());
+        assertTrue(index().using(Ingredient.SUGAR).isEmpty());
+
+        assertEquals("Latte", coffeeMaker.editRecipe(1, recipe("Anything", 45, 1, 0, 0, 0)));
+        assertEquals(slots(1), index().startingWith("lat"));
+        assertTrue(index().startingWith("any").isEmpty());
+        assertEquals(slots(1, 3), index().priceBetween(0, 49));
+        assertEquals(slots(1, 3), index().without(Ingredient.MILK));
+
+        assertTrue(coffeeMaker.addRecipe(recipe("Mochamint", 80, 1, 0, 0, 1)));
+        assertEquals(slots(0, 2), index().startingWith("mocha"));
+        assertEquals(slots(0, 1, 2, 3), index().all());
+    }
+
+    /**
+     * Recipes added in a batch or loaded from a snapshot are indexed.
+     */
+    @Test
+    public void testBatchAndLoad() throws RecipeException {
+        Recipe[] batch = {recipe("Cortado", 50, 2, 1, 0, 0), recipe("Cocoa", 30, 0, 2, 1, 3)};
+        assertEquals(2, coffeeMaker.addRecipes(batch, new boolean[2]));
+        assertEquals(slots(3, 4, 5), index().startingWith("co"));
+
+        RecipeBook book = new RecipeBook();
+        book.load(new Recipe[] {null, recipe("Cocoa", 30, 0, 2, 1, 3)});
+        assertEquals(slots(1), book.getIndex().without(Ingredient.COFFEE));
+    }
+
+    /**
+     * Extra ingredients are indexed by their ids.
+     */
+    @Test
+    public void testExtraIngredient() throws RecipeException {
+        int vanilla = Ingredient.STANDARD;
+        Recipe r = recipe("Vanilla Latte", 70, 3, 3, 0, 0);
+        r.setAmount(vanilla, 2);
+        assertTrue(coffeeMaker.addRecipe(r));
+        assertEquals(slots(4), index().using(vanilla));
+        assertEquals(slots(0, 1, 2, 3), index().without(vanilla));
+        assertEquals(slots(4), index().amountBetween(vanilla, 1, 2));
+        assertTrue(index().using(vanilla + 1).isEmpty());
+    }
+
+    /**
+     * An index always agrees with the menu it was published with.
+     * Expected: a menu taken before a change keeps its own results;
+     * the new menu's index sees the change.
+     */
+    @Test
+    public void testIndexMatchesMenu() throws RecipeException {
+        RecipeMenu before = coffeeMaker.getMenu();
+        assertEquals("Mocha", coffeeMaker.deleteRecipe(0));
+        assertEquals(slots(0, 2), before.getIndex().startingWith("moc"));
+        assertEquals("Mocha", before.getRecipe(0).getName());
+
+        RecipeMenu after = coffeeMaker.getMenu();
+        assertEquals(slots(2), after.getIndex().startingWith("moc"));
+        assertNull(after.getRecipe(0));
+        assertSame(after.getIndex(), coffeeMaker.getRecipeIndex());
+    }
+
+    /**
+     * A change copies only what it touches and shares the rest.
+     * Expected: every earlier menu still answers as it did when it
+     * was published, for names, prices and amounts alike.  An edit
+     * keeps the old name.
+     */
+    @Test
+    public void testOlderMenusUnchanged() throws RecipeException {
+        RecipeIndex first = index();
+        assertTrue(coffeeMaker.addRecipe(recipe("Mochamint", 75, 3, 0, 0, 2)));
+        RecipeIndex second = index();
+        assertEquals("Mochaccino", coffeeMaker.editRecipe(2, recipe("Anything", 40, 3, 0, 0, 0)));
+        RecipeIndex third = index();
+        assertEquals("Mocha", coffeeMaker.deleteRecipe(0));
+        RecipeIndex fourth = index();
+
+        assertEquals(slots(0, 2), first.startingWith("mocha"));
+        assertEquals(slots(0, 2, 4), second.startingWith("mocha"));
+        assertEquals(slots(0, 2, 4), third.startingWith("mocha"));
+        assertEquals(slots(2, 4), fourth.startingWith("mocha"));
+
+        assertEquals(slots(0), first.priceBetween(75, 75));
+        assertEquals(slots(0, 4), second.priceBetween(75, 75));
+        assertEquals(slots(2, 3), third.priceBetween(40, 40));
+        assertEquals(slots(4), fourth.priceBetween(75, 75));
+
+        assertEquals(slots(0, 2), first.using(Ingredient.CHOCOLATE));
+        assertEquals(slots(0, 2, 4), second.using(Ingredient.CHOCOLATE));
+        assertEquals(slots(0, 4), third.using(Ingredient.CHOCOLATE));
+        assertEquals(slots(4), fourth.using(Ingredient.CHOCOLATE));
+        assertEquals(slots(0, 1, 3), first.amountBetween(Ingredient.COFFEE, 3, 3));
+        assertEquals(slots(1, 2, 3, 4), fourth.amountBetween(Ingredient.COFFEE, 3, 3));
+    }
+}
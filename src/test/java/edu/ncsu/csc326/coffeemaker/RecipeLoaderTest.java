@@ -0,0 +1,153 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for RecipeLoader and bulk recipe adds.
+ */
+public class RecipeLoaderTest {
+
+    private static RecipeLoader.Result load(CoffeeMaker coffeeMaker, int chunkSize, String csv) 
+            throws IOException {
+        return new RecipeLoader(coffeeMaker, chunkSize).load(new BufferedReader(new StringReader(csv)));
+    }
+
+    /**
+     * Good rows are loaded in file order, across chunks.
+     * Expected: the header is skipped, quoted names keep their
+     * commas and quotes, and slots follow the file.
+     */
+    @Test
+    public void testLoadRows() throws IOException {
+        CoffeeMaker coffeeMaker = new CoffeeMaker(new RecipeBook(2, true), new Inventory());
+        RecipeLoader.Result result = load(coffeeMaker, 2,
+                "name,price,coffee,milk,sugar,chocolate\n"
+                + "Coffee,50,3,1,1,0\n"
+                + "\n"
+                + "\"Latte, large\",75, 3, 3 ,1,0\n"
+                + "Mocha,100,3,1,1,2\n"
+                + "\"The \"\"Best\"\" Tea\",20,0,0,1,0\n");
+        assertEquals(4, result.getLoaded());
+        assertEquals(0, result.getRejected());
+        assertEquals(0, coffeeMaker.indexOf("Coffee"));
+        assertEquals(1, coffeeMaker.indexOf("Latte, large"));
+        assertEquals(3, coffeeMaker.indexOf("The \"Best\" Tea"));
+        assertEquals(3, coffeeMaker.getRecipes()[1].getAmtMilk());
+        assertEquals(2, coffeeMaker.getRecipes()[2].getAmtChocolate());
+    }
+
+    /**
+     * Bad rows are reported with their line numbers and the rest
+     * are still loaded.
+     */
+    @Test
+    public void testBadRowsAreReported() throws IOException {
+        CoffeeMaker coffeeMaker = new CoffeeMaker(new RecipeBook(10, false), new Inventory());
+        RecipeLoader.Result result = load(coffeeMaker, 3,
+                "Coffee,50,3,1,1,0\n"
+                + "Latte,-75,3,3,1,0\n"
+                + "Mocha,100,3,1\n"
+                + "Coffee,40,3,1,1,0\n"
+                + ",10,1,1,1,1\n"
+                + "\"Tea,10,0,0,1,0\n"
+                + "Cocoa,60,0,2,1,abc\n"
+                + "Espresso,60,4,0,0,0,9\n"
+                + "Americano,55,3,0,0,0\n");
+        assertEquals(2, result.getLoaded());
+        assertEquals(7, result.getRejected());
+        assertEquals("line 2: Price must be a positive integer", result.getErrors().get(0));
+        assertEquals("line 3: expected 6 fields but found 4", result.getErrors().get(1));
+        assertEquals("line 4: recipe Coffee already exists", result.getErrors().get(2));
+        assertEquals("line 5: the recipe needs a name", result.getErrors().get(3));
+        assertTrue(result.getErrors().get(4).startsWith("line 6: "));
+        assertEquals("line 7: Units of chocolate must be a positive integer", result.getErrors().get(5));
+        assertTrue(result.getErrors().get(6).startsWith("line 8: "));
+        assertEquals(1, coffeeMaker.indexOf("Americano"));
+    }
+
+    /**
+     * A fixed-size book stops taking recipes once it is full.
+     */
+    @Test
+    public void testFullBook() throws IOException {
+        CoffeeMaker coffeeMaker = new CoffeeMaker();
+        RecipeLoader.Result result = load(coffeeMaker, 16,
+                "A,1,0,0,0,0\nB,1,0,0,0,0\nC,1,0,0,0,0\nD,1,0,0,0,0\n");
+        assertEquals(3, result.getLoaded());
+        assertEquals("line 4: the recipe book is full", result.getErrors().get(0));
+    }
+
+    /**
+     * A file of many recipes loads through small chunks.
+     * Expected: every recipe is at the slot of its row.
+     */
+    @Test
+    public void testLoadFile() throws IOException {
+        Path file = Files.createTempFile("recipes", ".csv");
+        try {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 5000; i++) {
+                    out.write("Recipe " + i + "," + (i % 100) + ",1,1,1,1\n");
+                }
+            }
+            CoffeeMaker coffeeMaker = new CoffeeMaker(new RecipeBook(16, true), new Inventory());
+            RecipeLoader.Result result = new RecipeLoader(coffeeMaker, 128).load(file);
+            assertEquals(5000, result.getLoaded());
+            assertEquals(4999, coffeeMaker.indexOf("Recipe 4999"));
+            assertEquals(99, coffeeMaker.getRecipes()[4999].getPrice());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A bulk add fills freed slots first, like addRecipe.
+     */
+    @Test
+    public void testAddRecipesReusesFreeSlots() throws RecipeException {
+        RecipeBook book = new RecipeBook();
+        Recipe[] recipes = new Recipe[4];
+        for (int i = 0; i < recipes.length; i++) {
+            recipes[i] = new Recipe();
+            recipes[i].setName("R" + i);
+        }
+        book.addRecipe(recipes[0]);
+        book.addRecipe(recipes[1]);
+        book.deleteRecipe(0);
+        boolean[] added = new boolean[4];
+        assertEquals(2, book.addRecipes(recipes, added));
+        assertArrayEquals(new boolean[] {true, false, true, false}, added);
+        assertEquals(0, book.indexOf("R0"));
+        assertEquals(2, book.indexOf("R2"));
+        assertEquals(3, book.getMenu().getRecipeCount());
+    }
+
+    /**
+     * Only a row naming the columns is a header.
+     * Expected: a first recipe whose name starts with "name" is
+     * loaded, and a header in another case is skipped.
+     */
+    @Test
+    public void testHeaderMustNameColumns() throws IOException {
+        CoffeeMaker coffeeMaker = new CoffeeMaker(new RecipeBook(4, false), new Inventory());
+        RecipeLoader.Result result = load(coffeeMaker, 4, "Nameless Latte,50,3,3,1,0\n");
+        assertEquals(1, result.getLoaded());
+        assertEquals(0, coffeeMaker.indexOf("Nameless Latte"));
+
+        result = load(coffeeMaker, 4, "Name, Price, Coffee, Milk, Sugar, Chocolate\nCoffee,50,3,1,1,0\n");
+        assertEquals(1, result.getLoaded());
+        assertEquals(0, result.getRejected());
+    }
+}
@@ -0,0 +1,149 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for SalesAnalytics.
+ */
+public class SalesAnalyticsTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private SalesLedger ledger;
+    private SalesAnalytics analytics;
+    private int coffee;
+    private int tea;
+
+    @Before
+    public void setUp() {
+        ledger = new SalesLedger(1000000);
+        analytics = new SalesAnalytics(ledger, 1, TimeUnit.HOURS);
+        coffee = ledger.nameId("Coffee");
+        tea = ledger.nameId("Tea");
+    }
+
+    /**
+     * Sales are totalled per recipe and per hour.
+     * Expected: three sales in two windows.
+     */
+    @Test
+    public void testTotals() {
+        ledger.append(10, 0, coffee, 50, 10, 3, 1, 1, 0);
+        ledger.append(20, 0, coffee, 50, 0, 3, 1, 1, 0);
+        ledger.append(HOUR + 5, 1, tea, 20, 5, 0, 0, 2, 0);
+        assertEquals(3, analytics.refresh());
+
+        assertEquals(3, analytics.getOrders());
+        assertEquals(120, analytics.getRevenue());
+        assertEquals(5.0, analytics.getAverageChange(), 0.001);
+        Map<String, Long> revenue = analytics.getRevenueByRecipe();
+        assertEquals(Long.valueOf(100), revenue.get("Coffee"));
+        assertEquals(Long.valueOf(20), revenue.get("Tea"));
+        assertEquals(Long.valueOf(2), analytics.getOrdersByRecipe().get("Coffee"));
+
+        List<SalesAnalytics.Window> windows = analytics.getWindows();
+        assertEquals(2, windows.size());
+        assertEquals(0, windows.get(0).getStart());
+        assertEquals(HOUR, windows.get(0).getEnd());
+        assertEquals(2, windows.get(0).getOrders());
+        assertEquals(2.0, windows.get(0).getOrdersPerHour(), 0.001);
+        assertEquals(6, windows.get(0).getAmtCoffee());
+        assertEquals(2, windows.get(0).getAmtMilk());
+        assertEquals(HOUR, windows.get(1).getStart());
+        assertEquals(20, windows.get(1).getRevenue());
+        assertEquals(2, windows.get(1).getAmtSugar());
+        assertEquals(0, windows.get(1).getAmtChocolate());
+    }
+
+    /**
+     * The figures only move on refresh, and each refresh only adds
+     * the sales recorded since the last one.
+     */
+    @Test
+    public void testIncrementalRefresh() {
+        ledger.append(10, 0, coffee, 50, 0, 1, 0, 0, 0);
+        assertEquals(1, analytics.refresh());
+        ledger.append(20, 0, coffee, 50, 0, 1, 0, 0, 0);
+        assertEquals(1, analytics.getOrders());
+
+        ledger.append(2 * HOUR, 1, tea, 20, 0, 0, 0, 1, 0);
+        assertEquals(2, analytics.refresh());
+        assertEquals(0, analytics.refresh());
+        assertEquals(3, analytics.getOrders());
+        assertEquals(120, analytics.getRevenue());
+        assertEquals(2, analytics.getWindows().size());
+        assertEquals(2, analytics.getWindows().get(0).getAmtCoffee());
+    }
+
+    /**
+     * A history large enough to be split across threads gives the
+     * same totals as adding it up in a loop, including windows and
+     * recipes that straddle the split points.
+     */
+    @Test
+    public void testParallelScanMatchesLoop() {
+        int sales = 5 * SalesAnalytics.THRESHOLD + 123;
+        long revenue = 0;
+        long coffeeOrders = 0;
+        long lastWindowSugar = 0;
+        for (int i = 0; i < sales; i++) {
+            long time = i * 1000L;
+            int id = i % 3 == 0 ? tea : coffee;
+            int price = i % 100;
+            ledger.append(time, id, id, price, i % 7, 1, 0, i % 2, 0);
+            revenue += price;
+            if (id == coffee) {
+                coffeeOrders++;
+            }
+            if (time >= (sales - 1) * 1000L / HOUR * HOUR) {
+                lastWindowSugar += i % 2;
+            }
+        }
+        assertEquals(sales, analytics.refresh());
+
+        assertEquals(sales, analytics.getOrders());
+        assertEquals(revenue, analytics.getRevenue());
+        assertEquals(Long.valueOf(coffeeOrders), analytics.getOrdersByRecipe().get("Coffee"));
+        List<SalesAnalytics.Window> windows = analytics.getWindows();
+        assertEquals((sales - 1) * 1000L / HOUR + 1, windows.size());
+        assertEquals(3600, windows.get(0).getOrders());
+        assertEquals(3600, windows.get(0).getAmtCoffee());
+        assertEquals(lastWindowSugar, windows.get(windows.size() - 1).getAmtSugar());
+    }
+
+    /**
+     * A ledger with no sales has nothing to report.
+     */
+    @Test
+    public void testEmpty() {
+        assertEquals(0, analytics.refresh());
+        assertEquals(0, analytics.getOrders());
+        assertEquals(0.0, analytics.getAverageChange(), 0.001);
+        assertTrue(analytics.getRevenueByRecipe().isEmpty());
+        assertTrue(analytics.getWindows().isEmpty());
+    }
+
+    /**
+     * Extra ingredients a ledger records are totalled per window like
+     * the standard four.
+     */
+    @Test
+    public void testExtraIngredients() {
+        SalesLedger wide = new SalesLedger(10, 5);
+        SalesAnalytics syrup = new SalesAnalytics(wide, 1, TimeUnit.HOURS);
+        int latte = wide.nameId("Vanilla Latte");
+        wide.append(10, 0, latte, 80, 0, 2, 3, 0, 0, 2);
+        wide.append(20, 0, latte, 80, 0, 2, 3, 0, 0, 1);
+        assertEquals(2, syrup.refresh());
+        assertEquals(3, syrup.getWindows().get(0).getAmount(Ingredient.STANDARD));
+        assertEquals(6, syrup.getWindows().get(0).getAmtMilk());
+        assertEquals(0, syrup.getWindows().get(0).getAmount(Ingredient.STANDARD + 1));
+    }
+}
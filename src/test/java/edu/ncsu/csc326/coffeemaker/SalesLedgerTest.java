@@ -0,0 +1,147 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for SalesLedger.
+ */
+public class SalesLedgerTest {
+
+    private CoffeeMaker coffeeMaker;
+
+    @Before
+    public void setUp() throws RecipeException {
+        coffeeMaker = new CoffeeMaker();
+        Recipe coffee = new Recipe();
+        coffee.setName("Coffee");
+        coffee.setAmtCoffee(1);
+        coffee.setPrice(50);
+        coffeeMaker.addRecipe(coffee);
+        Recipe tea = new Recipe();
+        tea.setName("Tea");
+        tea.setAmtSugar(1);
+        tea.setPrice(20);
+        coffeeMaker.addRecipe(tea);
+    }
+
+    /**
+     * Only sales are recorded, with their price and change.
+     * Expected: two records; failed orders leave none.
+     */
+    @Test
+    public void testRecordsSales() {
+        SalesLedger ledger = new SalesLedger(100);
+        coffeeMaker.addListener(ledger);
+        long before = System.currentTimeMillis();
+        assertEquals(10, coffeeMaker.makeCoffee(0, 60));
+        assertEquals(10, coffeeMaker.makeCoffee(0, 10));
+        assertEquals(50, coffeeMaker.makeCoffee(2, 50));
+        assertEquals(5, coffeeMaker.makeCoffeeBatch(new int[] {1}, new int[] {25})[0]);
+
+        assertEquals(2, ledger.size());
+        assertEquals(0, ledger.getSlot(0));
+        assertEquals("Coffee", ledger.getName(ledger.getNameId(0)));
+        assertEquals(50, ledger.getPrice(0));
+        assertEquals(10, ledger.getChange(0));
+        assertEquals(1, ledger.getAmtCoffee(0));
+        assertEquals(0, ledger.getAmtSugar(0));
+        assertTrue(ledger.getTime(0) >= before);
+        assertEquals(1, ledger.getSlot(1));
+        assertEquals("Tea", ledger.getName(ledger.getNameId(1)));
+        assertEquals(5, ledger.getChange(1));
+        assertEquals(1, ledger.getAmtSugar(1));
+        assertEquals(0, ledger.getAmtMilk(1));
+        assertTrue(ledger.getTime(1) >= ledger.getTime(0));
+    }
+
+    /**
+     * Records past the end of a segment go into the next one, which
+     * is allocated in the background once the first is started.
+     * Expected: every record reads back as written.
+     */
+    @Test
+    public void testSpansSegments() throws InterruptedException {
+        int sales = SalesLedger.SEGMENT_RECORDS + 10;
+        SalesLedger ledger = new SalesLedger(sales);
+        for (int i = 0; i < sales; i++) {
+            ledger.append(i, i % 3, 0, i % 100, 0, i % 7, 0, 0, 1);
+            if (i == 0) {
+                ledger.awaitAllocation();
+            }
+        }
+        assertEquals(sales, ledger.size());
+        assertEquals(0, ledger.getDropped());
+        for (int i = SalesLedger.SEGMENT_RECORDS - 5; i < sales; i++) {
+            assertEquals(i, ledger.getTime(i));
+            assertEquals(i % 3, ledger.getSlot(i));
+            assertEquals(i % 100, ledger.getPrice(i));
+            assertEquals(i % 7, ledger.getAmtCoffee(i));
+            assertEquals(1, ledger.getAmtChocolate(i));
+        }
+    }
+
+    /**
+     * A sale that reaches a segment before its background allocation
+     * has finished waits for it, or allocates it, instead of being
+     * dropped.
+     * Expected: every sale is kept although no sale waits on purpose.
+     */
+    @Test
+    public void testLateSegmentKeepsSales() {
+        int sales = 2 * SalesLedger.SEGMENT_RECORDS + 10;
+        SalesLedger ledger = new SalesLedger(sales);
+        for (int i = 0; i < sales; i++) {
+            ledger.append(i, 0, 0, 50, 0, 1, 0, 0, 0);
+        }
+        assertEquals(sales, ledger.size());
+        assertEquals(0, ledger.getDropped());
+        assertEquals(0, ledger.getFailedAllocations());
+        assertEquals(sales - 1, ledger.getTime(sales - 1));
+    }
+
+    /**
+     * A full ledger counts sales it cannot keep and never fails
+     * the purchase.
+     */
+    @Test
+    public void testFullLedgerDropsSales() {
+        SalesLedger ledger = new SalesLedger(1);
+        coffeeMaker.addListener(ledger);
+        assertEquals(0, coffeeMaker.makeCoffee(0, 50));
+        assertEquals(0, coffeeMaker.makeCoffee(0, 50));
+        assertEquals(1, ledger.size());
+        assertEquals(1, ledger.getDropped());
+    }
+
+    /**
+     * Records at or past size cannot be read.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReadPastEnd() {
+        new SalesLedger(10).getPrice(0);
+    }
+
+    /**
+     * A ledger made for extra ingredients records them; one made for
+     * the standard four drops sales that used them.
+     */
+    @Test
+    public void testExtraIngredients() {
+        SalesLedger wide = new SalesLedger(10, 5);
+        SalesLedger standard = new SalesLedger(10);
+        wide.append(1, 0, 0, 80, 20, 2, 3, 0, 0, 2);
+        standard.append(1, 0, 0, 80, 20, 2, 3, 0, 0, 2);
+        standard.append(2, 0, 0, 50, 0, 1, 0, 0, 0, 0);
+        assertEquals(1, wide.size());
+        assertEquals(2, wide.getAmount(0, Ingredient.STANDARD));
+        assertEquals(3, wide.getAmtMilk(0));
+        assertEquals(1, standard.size());
+        assertEquals(1, standard.getDropped());
+        assertEquals(1, standard.getAmtCoffee(0));
+    }
+}
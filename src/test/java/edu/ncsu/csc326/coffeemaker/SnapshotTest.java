@@ -0,0 +1,200 @@
+package edu.ncsu.csc326.coffeemaker;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for Snapshot and restarting from a snapshot.
+ */
+public class SnapshotTest {
+
+    private Path journalFile;
+    private Path snapshotFile;
+    private Journal journal;
+    private CoffeeMaker coffeeMaker;
+
+    @Before
+    public void setUp() throws IOException {
+        journalFile = Files.createTempFile("coffeemaker", ".journal");
+        snapshotFile = Files.createTempFile("coffeemaker", ".snapshot");
+        journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 64);
+        coffeeMaker = new CoffeeMaker(new RecipeBook(4, true), new Inventory());
+        journal.replay(new RecipeBook(), new Inventory());
+        coffeeMaker.addListener(journal);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    private static Recipe recipe(String name, int price, int coffee) throws RecipeException {
+        Recipe r = new Recipe();
+        r.setName(name);
+        r.setPrice(Integer.toString(price));
+        r.setAmtCoffee(Integer.toString(coffee));
+        r.setAmtMilk("1");
+        return r;
+    }
+
+    /**
+     * A snapshot plus the journal after it rebuilds the machine.
+     * Expected: changes before and after the snapshot are all
+     * present, including a deleted slot in the middle.
+     */
+    @Test
+    public void testRestartFromSnapshot() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            coffeeMaker.addRecipe(recipe("Recipe " + i, 10 + i, 1));
+        }
+        coffeeMaker.deleteRecipe(3);
+        coffeeMaker.makeCoffee(0, 10);
+        coffeeMaker.addInventory(2, 0, 0, 0);
+        Snapshot snapshot = coffeeMaker.snapshot(journal);
+        snapshot.write(snapshotFile);
+        assertEquals(9, snapshot.getRecipeCount());
+
+        coffeeMaker.addRecipe(recipe("Late", 40, 2));
+        coffeeMaker.makeCoffee(1, 20);
+        String inventory = coffeeMaker.checkInventory();
+
+        journal.close();
+        journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 64);
+        RecipeBook book = new RecipeBook(4, true);
+        Inventory restoredInventory = new Inventory();
+        journal.replay(Snapshot.read(snapshotFile), book, restoredInventory);
+
+        assertEquals(inventory, restoredInventory.toString());
+        assertEquals(coffeeMaker.getRecipes().length, book.getRecipes().length);
+        assertEquals(3, book.indexOf("Late"));
+        assertEquals(-1, book.indexOf("Recipe 3"));
+        assertEquals(9, book.indexOf("Recipe 9"));
+        assertEquals(19, book.getRecipes()[9].getPrice());
+        assertEquals(10, book.getMenu().getRecipeCount());
+        // The restored book is usable as usual
+        assertFalse(book.addRecipe(recipe("Recipe 9", 1, 1)));
+        assertTrue(book.addRecipe(recipe("Recipe 10", 1, 1)));
+    }
+
+    /**
+     * A snapshot reflects the journal, not purchases that have
+     * changed the inventory but are not yet journaled.
+     * Expected: the snapshot's levels match the journal's records.
+     */
+    @Test
+    public void testSnapshotFollowsJournal() throws Exception {
+        coffeeMaker.addRecipe(recipe("Coffee", 50, 3));
+        coffeeMaker.removeListener(journal);
+        coffeeMaker.makeCoffee(0, 50);
+        Snapshot snapshot = coffeeMaker.snapshot(journal);
+        RecipeBook book = new RecipeBook();
+        Inventory inventory = new Inventory();
+        snapshot.restore(book, inventory);
+        assertEquals(15, inventory.getCoffee());
+        assertEquals(0, book.indexOf("Coffee"));
+    }
+
+    /**
+     * A journal that was never replayed does not know the
+     * inventory levels.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotNeedsReplay() throws Exception {
+        journal.close();
+        journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 64);
+        coffeeMaker.snapshot(journal);
+    }
+
+    /**
+     * A fixed-size book cannot hold a larger snapshot.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreIntoSmallBook() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            coffeeMaker.addRecipe(recipe("Recipe " + i, 10, 1));
+        }
+        coffeeMaker.snapshot(journal).restore(new RecipeBook(), new Inventory());
+    }
+
+    /**
+     * Files that are not snapshots are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testReadDamagedSnapshot() throws Exception {
+        Files.write(snapshotFile, new byte[] {1, 2, 3});
+        Snapshot.read(snapshotFile);
+    }
+
+    /**
+     * A negative level is rejected by restore rather than ignored.
+     * Expected: an IOException, and neither the book nor the
+     * inventory changes.
+     */
+    @Test
+    public void testRestoreNegativeLevel() throws Exception {
+        Snapshot snapshot = new Snapshot(0, new int[] {15, -2, 15, 15}, new Recipe[] {recipe("Coffee", 50, 3)}, 1);
+        RecipeBook book = new RecipeBook();
+        Inventory inventory = new Inventory();
+        try {
+            snapshot.restore(book, inventory);
+            fail("A negative level should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(-1, book.indexOf("Coffee"));
+        assertEquals(15, inventory.getMilk());
+    }
+
+    /**
+     * A level that is negative in the snapshot, because a purchase
+     * was journaled before the restock it used, comes out whole
+     * once the rest of the journal is replayed.
+     */
+    @Test
+    public void testReplayNegativeLevel() throws Exception {
+        coffeeMaker.addInventory(10, 0, 0, 0);
+        Snapshot snapshot = new Snapshot(0, new int[] {-5, 15, 15, 15}, new Recipe[3], 0);
+        journal.close();
+        journal = new Journal(journalFile, 10, TimeUnit.MILLISECONDS, 64);
+        Inventory inventory = new Inventory();
+        journal.replay(snapshot, new RecipeBook(), inventory);
+        assertEquals(5, inventory.getCoffee());
+    }
+
+    /**
+     * Snapshots keep the levels and recipe amounts of extra
+     * ingredients.
+     */
+    @Test
+    public void testSnapshotExtraIngredients() throws Exception {
+        int vanilla = Ingredient.STANDARD;
+        Recipe latte = recipe("Vanilla Latte", 80, 2);
+        latte.setAmount(vanilla, 2);
+        Snapshot snapshot = new Snapshot(0, new int[] {15, 15, 15, 15, 7}, new Recipe[] {null, latte}, 1);
+        snapshot.write(snapshotFile);
+
+        RecipeBook book = new RecipeBook();
+        Inventory inventory = new Inventory("Vanilla");
+        Snapshot.read(snapshotFile).restore(book, inventory);
+        assertEquals(7, inventory.getStock(vanilla));
+        assertEquals(2, book.getRecipes()[1].getAmount(vanilla));
+        try {
+            Snapshot.read(snapshotFile).restore(new RecipeBook(), new Inventory());
+            fail("The snapshot holds syrup the inventory does not stock");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("ingredient 4"));
+        }
+    }
+}
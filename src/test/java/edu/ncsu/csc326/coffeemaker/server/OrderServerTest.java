@@ -0,0 +1,219 @@
+package edu.ncsu.csc326.coffeemaker.server;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc326.coffeemaker.CoffeeMaker;
+import edu.ncsu.csc326.coffeemaker.CoffeeMakerListener;
+import edu.ncsu.csc326.coffeemaker.PurchaseOutcome;
+import edu.ncsu.csc326.coffeemaker.Recipe;
+import edu.ncsu.csc326.coffeemaker.exceptions.RecipeException;
+
+/**
+ * Unit tests for OrderServer and LoadGenerator, over loopback.
+ */
+public class OrderServerTest {
+
+    private CoffeeMaker coffeeMaker;
+    private OrderServer server;
+    private Socket socket;
+    private Writer out;
+    private BufferedReader in;
+
+    @Before
+    public void setUp() throws RecipeException, IOException {
+        coffeeMaker = new CoffeeMaker();
+        Recipe coffee = new Recipe();
+        coffee.setName("Coffee");
+        coffee.setAmtCoffee("3");
+        coffee.setPrice("50");
+        coffeeMaker.addRecipe(coffee);
+
+        server = new OrderServer(coffeeMaker, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        socket.close();
+        server.close();
+    }
+
+    private String send(String line) throws IOException {
+        out.write(line + "\n");
+        out.flush();
+        return in.readLine();
+    }
+
+    /**
+     * Buying over the wire follows makeCoffee's rules.
+     * Expected: change of 10 for a paid coffee, money back for an
+     * empty slot, and 3 coffee units gone from the inventory.
+     */
+    @Test
+    public void testMake() throws IOException {
+        assertEquals("OK 10", send("MAKE 0 60"));
+        assertEquals("OK 60", send("MAKE 1 60"));
+        assertEquals("OK 60", send("MAKE 7 60"));
+        assertTrue(coffeeMaker.checkInventory().startsWith("Coffee: 12\n"));
+    }
+
+    /**
+     * Recipes can be added, listed, edited and deleted.
+     * Expected: the menu follows each change.
+     */
+    @Test
+    public void testRecipeCommands() throws IOException {
+        assertEquals("OK 0=Coffee", send("MENU"));
+        assertEquals("OK", send("ADD 40 1 1 1 1 Cafe con Leche"));
+        assertEquals("OK 0=Coffee|1=Cafe con Leche", send("MENU"));
+        assertEquals("OK Coffee", send("EDIT 0 30 2 0 0 0"));
+        assertEquals(30, coffeeMaker.getRecipes()[0].getPrice());
+        assertEquals("OK Cafe con Leche", send("DEL 1"));
+        assertEquals("OK 0=Coffee", send("MENU"));
+        assertEquals("ERR no such recipe", send("DEL 1"));
+        assertTrue(send("ADD -1 1 1 1 1 Bad").startsWith("ERR "));
+    }
+
+    /**
+     * Inventory can be restocked and checked.
+     * Expected: ADDINV adds to every ingredient, bad amounts are
+     * rejected without changing the inventory.
+     */
+    @Test
+    public void testInventoryCommands() throws IOException {
+        assertEquals("OK", send("ADDINV 1 2 3 4"));
+        assertEquals("OK Coffee: 16; Milk: 17; Sugar: 18; Chocolate: 19", send("INV"));
+        assertTrue(send("ADDINV 1 1 1 x").startsWith("ERR "));
+        assertEquals("OK Coffee: 16; Milk: 17; Sugar: 18; Chocolate: 19", send("INV"));
+    }
+
+    /**
+     * Malformed requests are answered with an error and the
+     * connection stays usable; QUIT closes it.
+     */
+    @Test
+    public void testErrorsAndQuit() throws IOException {
+        assertEquals("ERR unknown command", send("BREW"));
+        assertTrue(send("MAKE 0").startsWith("ERR "));
+        assertTrue(send("MAKE 0 lots").startsWith("ERR "));
+        assertEquals("OK 10", send("MAKE 0 60"));
+        assertNull(send("QUIT"));
+    }
+
+    /**
+     * Several kiosks can order at once.
+     * Expected: the load generator gets answers.
+     */
+    @Test
+    public void testLoadGenerator() throws Exception {
+        LoadGenerator generator = new LoadGenerator(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 2);
+        assertTrue(generator.run(200) > 0);
+        assertTrue(send("MENU").contains("Hot Water"));
+    }
+
+    /**
+     * A listener that throws only drops the kiosk whose request hit
+     * it.
+     * Expected: that kiosk gets an error and is disconnected; a new
+     * kiosk is still served.
+     */
+    @Test
+    public void testRuntimeExceptionDropsOneConnection() throws IOException {
+        coffeeMaker.addListener(new CoffeeMakerListener() {
+            @Override
+            public void recipeDeleted(int slot) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        assertEquals("ERR internal error", send("DEL 0"));
+        assertNull(in.readLine());
+
+        socket.close();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals("OK", send("ADDINV 1 1 1 1"));
+    }
+
+    /**
+     * A line longer than the buffer is refused once and the
+     * connection is closed.
+     */
+    @Test
+    public void testLineTooLong() throws IOException {
+        char[] line = new char[1024];
+        Arrays.fill(line, 'x');
+        out.write(line);
+        out.flush();
+        assertEquals("ERR line too long", in.readLine());
+        assertNull(in.readLine());
+    }
+
+    /**
+     * A kiosk that sends requests without reading the responses is
+     * not read from while its responses pile up.
+     * Expected: the server stops handling that kiosk's orders while
+     * it does not read, then answers every one in order once it
+     * does.
+     */
+    @Test
+    public void testUnreadResponsesStopReading() throws Exception {
+        final AtomicInteger handled = new AtomicInteger();
+        coffeeMaker.addListener(new CoffeeMakerListener() {
+            @Override
+            public void orderCompleted(int slot, PurchaseOutcome outcome, long elapsedNanos) {
+                handled.incrementAndGet();
+            }
+        });
+        char[] name = new char[900];
+        Arrays.fill(name, 'x');
+        assertEquals("OK", send("ADD 50 1 0 0 0 " + new String(name)));
+        final int orders = 10000;
+        // Each MENU response is about a kilobyte
+        Thread kiosk = new Thread(() -> {
+            try {
+                for (int i = 0; i < orders; i++) {
+                    out.write("MENU\nMAKE 7 60\n");
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        kiosk.start();
+        int seen = -1;
+        while (seen != handled.get()) {
+            seen = handled.get();
+            Thread.sleep(200);
+        }
+        assertTrue(seen < orders);
+
+        for (int i = 0; i < orders; i++) {
+            assertTrue(in.readLine().startsWith("OK 0=Coffee|1=xxx"));
+            assertEquals("OK 60", in.readLine());
+        }
+        kiosk.join();
+        assertEquals(orders, handled.get());
+    }
+}